@@ -1,5 +1,7 @@
 package org.totodev.engine.core;
 
+import org.totodev.engine.ecs.EventRegistry;
+
 /**
  * All default events used by the engine
  */
@@ -22,6 +24,30 @@ public final class CoreEvents {
      */
     public static final String ENTITY_DESTROYED = "EntityDestroyed";
 
+    /**
+     * Called once per {@link org.totodev.engine.ecs.Scene#createEntities(int) batch} of created entities, before they are added to the scene.
+     * The only argument is an int[] with the ids of all new entities, which must not be modified.
+     * Entities created in a batch also fire {@link #CREATE_ENTITY} and {@link #ENTITY_CREATED} one by one after the batch events,
+     * so subscribers should only subscribe to one of them.
+     */
+    public static final String CREATE_ENTITIES = "CreateEntities";
+    /**
+     * Called once per batch of created entities, after they were added to the scene. The only argument is an int[] with their ids.
+     */
+    public static final String ENTITIES_CREATED = "EntitiesCreated";
+
+    /**
+     * Called once per {@link org.totodev.engine.ecs.Scene#destroyEntities(org.eclipse.collections.api.IntIterable) batch} of destroyed entities,
+     * before they are removed from the scene. The only argument is an int[] with the ids of all destroyed entities, which must not be modified.
+     * Entities destroyed in a batch also fire {@link #DESTROY_ENTITY} and {@link #ENTITY_DESTROYED} one by one after the batch events,
+     * so subscribers should only subscribe to one of them.
+     */
+    public static final String DESTROY_ENTITIES = "DestroyEntities";
+    /**
+     * Called once per batch of destroyed entities, after they were removed from the scene. The only argument is an int[] with their ids.
+     */
+    public static final String ENTITIES_DESTROYED = "EntitiesDestroyed";
+
     /**
      * Called after a component was added to the scene
      */
@@ -48,4 +74,29 @@ public final class CoreEvents {
      * Called after a component was removed from the scene
      */
     public static final String SYSTEM_REMOVED = "SystemRemoved";
+
+    /**
+     * Called on the update thread after {@link org.totodev.engine.ecs.SnapshotManager#publish()} published a new snapshot,
+     * which {@link org.totodev.engine.ecs.SnapshotManager#acquire()} returns until the next one is published
+     */
+    public static final String SNAPSHOT_PUBLISHED = "SnapshotPublished";
+
+    //region Ids
+    // The interned ids of the events above, used by the scene to invoke them without looking up the names
+    public static final int CREATE_ENTITY_ID = EventRegistry.getId(CREATE_ENTITY);
+    public static final int ENTITY_CREATED_ID = EventRegistry.getId(ENTITY_CREATED);
+    public static final int DESTROY_ENTITY_ID = EventRegistry.getId(DESTROY_ENTITY);
+    public static final int ENTITY_DESTROYED_ID = EventRegistry.getId(ENTITY_DESTROYED);
+    public static final int CREATE_ENTITIES_ID = EventRegistry.getId(CREATE_ENTITIES);
+    public static final int ENTITIES_CREATED_ID = EventRegistry.getId(ENTITIES_CREATED);
+    public static final int DESTROY_ENTITIES_ID = EventRegistry.getId(DESTROY_ENTITIES);
+    public static final int ENTITIES_DESTROYED_ID = EventRegistry.getId(ENTITIES_DESTROYED);
+    public static final int COMPONENT_ADDED_ID = EventRegistry.getId(COMPONENT_ADDED);
+    public static final int COMPONENT_REMOVED_ID = EventRegistry.getId(COMPONENT_REMOVED);
+    public static final int GLOBAL_COMPONENT_ADDED_ID = EventRegistry.getId(GLOBAL_COMPONENT_ADDED);
+    public static final int GLOBAL_COMPONENT_REMOVED_ID = EventRegistry.getId(GLOBAL_COMPONENT_REMOVED);
+    public static final int SYSTEM_ADDED_ID = EventRegistry.getId(SYSTEM_ADDED);
+    public static final int SYSTEM_REMOVED_ID = EventRegistry.getId(SYSTEM_REMOVED);
+    public static final int SNAPSHOT_PUBLISHED_ID = EventRegistry.getId(SNAPSHOT_PUBLISHED);
+    //endregion
 }
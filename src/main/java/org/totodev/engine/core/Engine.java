@@ -2,6 +2,7 @@ package org.totodev.engine.core;
 
 import org.eclipse.collections.api.factory.Sets;
 import org.eclipse.collections.api.set.*;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.system.MemoryStack;
@@ -29,6 +30,10 @@ public class Engine {
     private static SemVer appVersion;
 
     private static Window mainWindow;
+    // Only true after initializeHeadless, so graphics systems added before the engine is initialized are kept
+    private static volatile boolean headless = false;
+    // True once glfw and vulkan are initialized
+    private static volatile boolean graphicsInitialized = false;
 
     //region Vulkan
     private static VkInstance vkInstance;
@@ -63,10 +68,49 @@ public class Engine {
 
         initGlfw();
         initVulkan();
+        headless = false;
+        graphicsInitialized = true;
 
         Logger.log(LogLevel.DEBUG, "Engine", "Initialized");
     }
 
+    /**
+     * Initializes the engine without glfw and vulkan, for dedicated servers and machines without a GPU.
+     * Systems annotated with {@link RequiresGraphics} are not added to scenes, updaters do not poll window events,
+     * and scenes are driven by their {@link org.totodev.engine.core.systems.Updater Updater} or a {@link SceneRuntime} only.
+     * @param appName    The name of this application
+     * @param appVersion The version of this application
+     */
+    public static void initializeHeadless(String appName, SemVer appVersion) {
+        Engine.appName = appName;
+        Engine.appVersion = appVersion;
+        headless = true;
+
+        Logger.log(LogLevel.DEBUG, "Engine", "Initialized headless");
+    }
+
+    /**
+     * @return Whether the engine was {@link #initializeHeadless initialized headless}
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Undoes {@link #initializeHeadless}, so tests that run headless do not change the behavior of the following tests.
+     */
+    @VisibleForTesting
+    public static void resetHeadless() {
+        headless = false;
+    }
+
+    /**
+     * @return Whether glfw and vulkan are initialized, which is neither the case while headless nor before the engine is initialized
+     */
+    public static boolean hasGraphics() {
+        return graphicsInitialized;
+    }
+
     private static void initGlfw() {
         GLFWErrorCallback.createPrint(System.err).set();
 
@@ -133,11 +177,25 @@ public class Engine {
      * @param windowHeight Height of the new main window in pixels
      */
     public static void start(int windowWidth, int windowHeight) {
+        if (!graphicsInitialized) throw new IllegalStateException("The engine is not initialized with graphics and can not open a window, use startHeadless() instead");
         mainWindow = new Window(appName, windowWidth, windowHeight, false);
         glfwSetWindowCloseCallback(mainWindow.getId(), windowId -> terminate());
 
         Logger.log(LogLevel.INFO, "Engine", "Started");
+        runMainThread();
+    }
 
+    /**
+     * Locks the executing thread like {@link Engine#start(int, int)}, but without opening a window,
+     * until {@link Engine#terminate()} is called from another thread. <br/>
+     * Must be called from the main thread.
+     */
+    public static void startHeadless() {
+        Logger.log(LogLevel.INFO, "Engine", "Started headless");
+        runMainThread();
+    }
+
+    private static void runMainThread() {
         while (true) {
             try {
                 mainThreadQueue.take().run();
@@ -166,13 +224,14 @@ public class Engine {
 
     /**
      * Runs a task asynchronously on the worker thread pool.
-     * @param task The task to run
+     * @param task The task to run, which gets null instead of the vulkan resources of the worker if the engine {@link #hasGraphics() has no graphics}
      */
     public static void executeOnWorkerPool(Consumer<WorkerResources> task) {
-        workers.execute(() -> task.accept(workerResources.get()));
+        workers.execute(() -> task.accept(graphicsInitialized ? workerResources.get() : null));
     }
 
     private static void cleanup() {
+        if (!graphicsInitialized) return;
         mainWindow.close();
         vkDestroyDevice(vkLogicalDevice, null);
         if (vkDebugManager != 0 && vkGetInstanceProcAddr(vkInstance, "vkDestroyDebugUtilsMessengerEXT") != NULL)
@@ -0,0 +1,195 @@
+package org.totodev.engine.core;
+
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.factory.primitive.ObjectIntMaps;
+import org.jetbrains.annotations.*;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.Scene;
+import org.totodev.engine.util.logging.*;
+
+import java.io.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records everything that enters a scene from the outside, so the session can be replayed deterministically with {@link JournalReplay}. <br/>
+ * Events from outside the simulation, for example input, are {@link #inject injected} into the journal instead of being invoked directly.
+ * The {@link Updater} the journal is {@link Updater#setJournal set on} delivers them at the start of its next update and
+ * writes them to the journal together with the delta time of the update. The updates of {@link org.totodev.engine.core.components.UpdateGroups update groups}
+ * are recorded too, so they are replayed in the same order relative to the updates.
+ * Arguments can be null, int, long, float, double, boolean, String or int[].
+ */
+public class EventJournal implements AutoCloseable {
+    //region Format
+    static final int MAGIC = 0x45564A31; // "EVJ1"
+    // A tick with its delta time as float
+    static final byte RECORD_TICK = 0;
+    // An event with the index of its name and its arguments
+    static final byte RECORD_EVENT = 1;
+    // The name of an event or update group for the next free index, written before its first use
+    static final byte RECORD_NAME = 2;
+    // An update of an update group with the index of the group name and its delta time as float
+    static final byte RECORD_GROUP = 3;
+
+    static final byte ARG_NULL = 0;
+    static final byte ARG_INT = 1;
+    static final byte ARG_LONG = 2;
+    static final byte ARG_FLOAT = 3;
+    static final byte ARG_DOUBLE = 4;
+    static final byte ARG_BOOLEAN = 5;
+    static final byte ARG_STRING = 6;
+    static final byte ARG_INT_ARRAY = 7;
+    //endregion
+
+    private record Injected(String event, Object[] args) {
+    }
+
+    private final Queue<Injected> injected = new ConcurrentLinkedQueue<>();
+    private final MutableObjectIntMap<String> nameIndices = ObjectIntMaps.mutable.empty();
+    private final DataOutputStream out;
+    private boolean failed = false;
+
+    /**
+     * @param out The stream to write the journal to, which is closed with the journal
+     */
+    public EventJournal(@NotNull OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        try {
+            this.out.writeInt(MAGIC);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Queues an event for the next update. Can be called from any thread.
+     * @param event The name of the event
+     * @param args  The arguments of the event
+     * @throws IllegalArgumentException If an argument can not be written to the journal
+     */
+    public void inject(@NotNull String event, @Nullable Object... args) {
+        Object[] copy = args == null ? new Object[]{null} : args.clone();
+        for (int i = 0; i < copy.length; i++) {
+            Object arg = copy[i];
+            if (arg != null && !(arg instanceof Integer || arg instanceof Long || arg instanceof Float || arg instanceof Double
+                    || arg instanceof Boolean || arg instanceof String || arg instanceof int[]))
+                throw new IllegalArgumentException("Arguments of type " + arg.getClass().getName() + " can not be journaled");
+            // Arrays are copied, so the caller can reuse them before the event is delivered
+            if (arg instanceof int[] array) copy[i] = array.clone();
+        }
+        injected.add(new Injected(event, copy));
+    }
+
+    /**
+     * Delivers all injected events to the scene and records them, followed by the delta time of the update. Called by the {@link Updater}.
+     */
+    public void beginTick(@NotNull Scene scene, float deltaTime) {
+        Injected next;
+        while ((next = injected.poll()) != null) {
+            write(next);
+            deliver(scene, next.event(), next.args());
+        }
+        if (failed) return;
+        try {
+            out.writeByte(RECORD_TICK);
+            out.writeFloat(deltaTime);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records an update of an update group. Called by the {@link Updater} before the group is updated.
+     * @param group The name of the group
+     */
+    public void recordGroup(@NotNull String group, float deltaTime) {
+        if (failed) return;
+        try {
+            int index = writeName(group);
+            out.writeByte(RECORD_GROUP);
+            out.writeInt(index);
+            out.writeFloat(deltaTime);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    static void deliver(Scene scene, String event, Object[] args) {
+        if (args.length == 0) scene.events.invokeEvent(event);
+        else if (args.length == 1) scene.events.invokeEvent(event, args[0]);
+        else scene.events.invokeEvent(event, args);
+    }
+
+    private void write(Injected event) {
+        if (failed) return;
+        try {
+            int index = writeName(event.event());
+            out.writeByte(RECORD_EVENT);
+            out.writeInt(index);
+            out.writeByte(event.args().length);
+            for (Object arg : event.args())
+                writeArgument(arg);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return The index of the name, which is written first if it was not used yet
+     */
+    private int writeName(String name) throws IOException {
+        int index = nameIndices.getIfAbsent(name, -1);
+        if (index != -1) return index;
+        index = nameIndices.size();
+        nameIndices.put(name, index);
+        out.writeByte(RECORD_NAME);
+        out.writeUTF(name);
+        return index;
+    }
+
+    private void writeArgument(Object arg) throws IOException {
+        if (arg == null) {
+            out.writeByte(ARG_NULL);
+        } else if (arg instanceof Integer value) {
+            out.writeByte(ARG_INT);
+            out.writeInt(value);
+        } else if (arg instanceof Long value) {
+            out.writeByte(ARG_LONG);
+            out.writeLong(value);
+        } else if (arg instanceof Float value) {
+            out.writeByte(ARG_FLOAT);
+            out.writeFloat(value);
+        } else if (arg instanceof Double value) {
+            out.writeByte(ARG_DOUBLE);
+            out.writeDouble(value);
+        } else if (arg instanceof Boolean value) {
+            out.writeByte(ARG_BOOLEAN);
+            out.writeBoolean(value);
+        } else if (arg instanceof String value) {
+            out.writeByte(ARG_STRING);
+            out.writeUTF(value);
+        } else if (arg instanceof int[] value) {
+            out.writeByte(ARG_INT_ARRAY);
+            out.writeInt(value.length);
+            for (int v : value)
+                out.writeInt(v);
+        }
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        Logger.log(LogLevel.ERROR, "EventJournal", "Could not write journal, recording stopped [" + e + "]");
+    }
+
+    /**
+     * @return Whether writing the journal failed. Injected events are still delivered, but no longer recorded.
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,114 @@
+package org.totodev.engine.core;
+
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.api.list.primitive.MutableLongList;
+import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.impl.factory.primitive.LongLists;
+import org.jetbrains.annotations.NotNull;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.Scene;
+
+import java.io.*;
+
+/**
+ * Replays an {@link EventJournal} on a scene without a window, as fast as possible, one update after another. <br/>
+ * The recorded events are invoked at the same point between updates as in the recorded session, and every update gets the recorded delta time,
+ * so a scene that started in the same state runs through the same states. The time every update took is measured, which makes
+ * replays of real sessions usable as performance regression runs.
+ */
+public class JournalReplay {
+    private final Scene scene;
+    private final Updater updater;
+    private final DataInputStream in;
+    private final MutableList<String> names = Lists.mutable.empty();
+    private final MutableLongList tickNanos = LongLists.mutable.empty();
+
+    /**
+     * @param scene The scene to replay the journal on, which must have an {@link Updater}. It is started if it is not running yet,
+     *              and its updater stops running its own thread.
+     * @param in    The stream to read the journal from
+     * @throws IOException If the stream does not contain a journal
+     */
+    public JournalReplay(@NotNull Scene scene, @NotNull InputStream in) throws IOException {
+        this.scene = scene;
+        this.updater = scene.getSystem(Updater.class);
+        if (updater == null) throw new IllegalArgumentException("Scenes need an Updater to replay a journal");
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != EventJournal.MAGIC) throw new IOException("Not an event journal");
+
+        updater.setRunInOwnThread(false);
+        if (!scene.isRunning()) scene.start();
+    }
+
+    /**
+     * Replays the events and update group updates up to and including the next update.
+     * @return False, if the journal has ended
+     */
+    public boolean tick() throws IOException {
+        while (true) {
+            int record = in.read();
+            switch (record) {
+                case -1 -> {
+                    return false;
+                }
+                case EventJournal.RECORD_NAME -> names.add(in.readUTF());
+                case EventJournal.RECORD_EVENT -> {
+                    String event = names.get(in.readInt());
+                    Object[] args = new Object[in.readUnsignedByte()];
+                    for (int i = 0; i < args.length; i++)
+                        args[i] = readArgument();
+                    EventJournal.deliver(scene, event, args);
+                }
+                case EventJournal.RECORD_GROUP -> {
+                    String group = names.get(in.readInt());
+                    updater.tickGroup(group, in.readFloat());
+                }
+                case EventJournal.RECORD_TICK -> {
+                    float deltaTime = in.readFloat();
+                    long start = System.nanoTime();
+                    updater.tick(deltaTime);
+                    tickNanos.add(System.nanoTime() - start);
+                    return true;
+                }
+                default -> throw new IOException("Unknown journal record " + record);
+            }
+        }
+    }
+
+    /**
+     * Replays the whole journal.
+     * @return The number of replayed updates
+     */
+    public int run() throws IOException {
+        int ticks = 0;
+        while (tick()) ticks++;
+        return ticks;
+    }
+
+    private Object readArgument() throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case EventJournal.ARG_NULL -> null;
+            case EventJournal.ARG_INT -> in.readInt();
+            case EventJournal.ARG_LONG -> in.readLong();
+            case EventJournal.ARG_FLOAT -> in.readFloat();
+            case EventJournal.ARG_DOUBLE -> in.readDouble();
+            case EventJournal.ARG_BOOLEAN -> in.readBoolean();
+            case EventJournal.ARG_STRING -> in.readUTF();
+            case EventJournal.ARG_INT_ARRAY -> {
+                int[] array = new int[in.readInt()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readInt();
+                yield array;
+            }
+            default -> throw new IOException("Unknown journal argument type " + type);
+        };
+    }
+
+    /**
+     * @return The time every replayed update took in nanoseconds, in the order of the updates
+     */
+    public long[] getTickNanos() {
+        return tickNanos.toArray();
+    }
+}
@@ -0,0 +1,11 @@
+package org.totodev.engine.core;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks systems that need glfw or vulkan. They are not added to scenes while the engine is {@link Engine#isHeadless() headless}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresGraphics {
+}
@@ -0,0 +1,177 @@
+package org.totodev.engine.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.Scene;
+import org.totodev.engine.util.logging.*;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Updates many scenes on a fixed number of shared threads instead of one thread per scene, for example to host many small matches on one server. <br/>
+ * Every scene has a deadline for its next update, derived from the update rate of its {@link Updater} and its {@link org.totodev.engine.core.components.UpdateGroups update groups}. The threads always update the scene
+ * with the earliest deadline and wait while no deadline has passed yet. A scene is only ever updated by one thread at a time.
+ * A scene that falls behind does not try to catch up on the missed updates, so it can not starve the other scenes.
+ */
+public class SceneRuntime implements AutoCloseable {
+    private static final class ScheduledScene implements Delayed {
+        private final Scene scene;
+        private final Updater updater;
+        // The time the scene is due for its next update of any kind, which orders the queue
+        private long deadline;
+        // The time the next update of the updater itself is due, update groups can be due earlier
+        private long tickDeadline;
+        private long lastTickNanos;
+        private volatile boolean removed = false;
+        // Held by the worker while it updates the scene, so removing the scene can wait for the running update
+        private final ReentrantLock updating = new ReentrantLock();
+
+        private ScheduledScene(Scene scene, Updater updater, long now) {
+            this.scene = scene;
+            this.updater = updater;
+            this.deadline = now;
+            this.tickDeadline = now;
+            this.lastTickNanos = now;
+        }
+
+        @Override
+        public long getDelay(@NotNull TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(@NotNull Delayed other) {
+            return Long.compare(deadline, ((ScheduledScene) other).deadline);
+        }
+    }
+
+    private final DelayQueue<ScheduledScene> queue = new DelayQueue<>();
+    private final Map<Scene, ScheduledScene> scenes = new ConcurrentHashMap<>();
+    private final Thread[] workers;
+
+    /**
+     * Creates a runtime with one thread per available processor.
+     */
+    public SceneRuntime() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threadCount The number of threads to update the scenes on
+     */
+    public SceneRuntime(int threadCount) {
+        if (threadCount < 1) throw new IllegalArgumentException("Thread count must be at least 1, was " + threadCount);
+        workers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Thread(this::work, "SceneRuntime-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Adds a scene to this runtime and starts it, if it is not running yet. The {@link Updater} of the scene stops running its own thread.
+     * @param scene The scene to update, which must have an {@link Updater}
+     */
+    public void add(@NotNull Scene scene) {
+        Updater updater = scene.getSystem(Updater.class);
+        if (updater == null) throw new IllegalArgumentException("Scenes need an Updater to be run by a SceneRuntime");
+        ScheduledScene scheduled = new ScheduledScene(scene, updater, System.nanoTime());
+        if (scenes.putIfAbsent(scene, scheduled) != null) return;
+
+        updater.setRunInOwnThread(false);
+        if (!scene.isRunning()) scene.start();
+        queue.put(scheduled);
+    }
+
+    /**
+     * Removes a scene from this runtime. An update that is already running is finished before this returns,
+     * unless it is called from within that update. The scene is not stopped.
+     * @param scene The scene to remove
+     */
+    public void remove(@NotNull Scene scene) {
+        ScheduledScene scheduled = scenes.remove(scene);
+        if (scheduled == null) return;
+        scheduled.removed = true;
+        queue.remove(scheduled);
+        // Reentrant, so a scene that removes itself during its update does not wait for itself
+        scheduled.updating.lock();
+        scheduled.updating.unlock();
+    }
+
+    public int getSceneCount() {
+        return scenes.size();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ScheduledScene scheduled;
+            try {
+                scheduled = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (scheduled.removed) continue;
+
+            long now = System.nanoTime();
+            long groupDeadline = Long.MAX_VALUE;
+            scheduled.updating.lock();
+            try {
+                // The scene could have been removed while it was taken from the queue
+                if (scheduled.removed) continue;
+                if (scheduled.scene.isRunning()) {
+                    try {
+                        if (now >= scheduled.tickDeadline) tick(scheduled, now);
+                        groupDeadline = scheduled.updater.runGroups(now);
+                    } catch (RuntimeException e) {
+                        Logger.log(LogLevel.ERROR, "SceneRuntime", "Update failed, the scene will be removed [" + e + "]");
+                        remove(scheduled.scene);
+                        continue;
+                    }
+                } else if (now >= scheduled.tickDeadline) {
+                    scheduled.lastTickNanos = now;
+                    scheduled.tickDeadline = Math.max(scheduled.tickDeadline + scheduled.updater.getTickIntervalNanos(), now);
+                }
+            } finally {
+                scheduled.updating.unlock();
+            }
+
+            scheduled.deadline = Math.min(scheduled.tickDeadline, groupDeadline);
+            if (!scheduled.removed) queue.put(scheduled);
+        }
+    }
+
+    private static void tick(ScheduledScene scheduled, long now) {
+        scheduled.updater.tick((now - scheduled.lastTickNanos) / 1000000000f);
+        scheduled.lastTickNanos = now;
+
+        // Scenes that fell behind queue up behind scenes that are even further behind, instead of running all missed updates at once
+        scheduled.tickDeadline = Math.max(scheduled.tickDeadline + scheduled.updater.getTickIntervalNanos(), now);
+    }
+
+    /**
+     * Stops all threads of this runtime and waits until their running updates are finished, unless it is called from one of them.
+     * The scenes are removed, but not stopped.
+     */
+    @Override
+    public void close() {
+        for (Thread worker : workers)
+            worker.interrupt();
+        for (ScheduledScene scheduled : scenes.values())
+            scheduled.removed = true;
+        scenes.clear();
+        queue.clear();
+
+        for (Thread worker : workers) {
+            if (worker == Thread.currentThread()) continue;
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
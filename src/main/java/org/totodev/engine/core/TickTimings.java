@@ -0,0 +1,139 @@
+package org.totodev.engine.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.util.LogLinearHistogram;
+import org.totodev.engine.util.logging.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long the updates of an {@link Updater} and their phases take, over a sliding window of the last seconds. <br/>
+ * The window is split into slots with one {@link LogLinearHistogram} per metric each, the oldest slot is cleared and reused when time moves on.
+ * The memory is allocated once and recording does not lock or allocate, so the timings are always on.
+ */
+public class TickTimings {
+    public enum Metric {
+        PRE_UPDATE,
+        UPDATE,
+        POST_UPDATE,
+        /**
+         * A whole update, including the playback of the command buffers and the publishing of the snapshots
+         */
+        TICK,
+        /**
+         * A whole update of an {@link org.totodev.engine.core.components.UpdateGroups update group}, of all groups together
+         */
+        GROUP
+    }
+
+    /**
+     * The timings of one metric in the window, in nanoseconds.
+     */
+    public record Summary(Metric metric, long count, long p50, long p99, long p999, long max) {
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+    private static final ScheduledExecutorService logExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "TickTimings");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long slotNanos;
+    private final LogLinearHistogram[][] slots;
+    // The index of the time slice every slot currently holds
+    private final AtomicLongArray slotEpochs;
+    private ScheduledFuture<?> logging;
+
+    /**
+     * Creates timings over the last 10 seconds in 5 slots.
+     */
+    public TickTimings() {
+        this(10, TimeUnit.SECONDS, 5);
+    }
+
+    /**
+     * @param window    The length of the window
+     * @param unit      The unit of the window
+     * @param slotCount Into how many slots the window is split. More slots make the window slide more smoothly, but need more memory.
+     */
+    public TickTimings(long window, @NotNull TimeUnit unit, int slotCount) {
+        if (slotCount < 1) throw new IllegalArgumentException("Slot count must be at least 1, was " + slotCount);
+        slotNanos = Math.max(1, unit.toNanos(window) / slotCount);
+        slots = new LogLinearHistogram[slotCount][METRICS.length];
+        slotEpochs = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slotEpochs.set(i, -1);
+            for (int j = 0; j < METRICS.length; j++)
+                slots[i][j] = new LogLinearHistogram();
+        }
+    }
+
+    /**
+     * Records one duration. Must not be called for the same timings from multiple threads at the same time.
+     * @param metric   The metric the duration belongs to
+     * @param nanos    The duration
+     * @param nowNanos The current {@link System#nanoTime() time}
+     */
+    public void record(@NotNull Metric metric, long nanos, long nowNanos) {
+        long epoch = nowNanos / slotNanos;
+        int slot = (int) Math.floorMod(epoch, (long) slots.length);
+        if (slotEpochs.get(slot) != epoch) {
+            for (LogLinearHistogram histogram : slots[slot])
+                histogram.reset();
+            slotEpochs.set(slot, epoch);
+        }
+        slots[slot][metric.ordinal()].record(nanos);
+    }
+
+    /**
+     * @return The timings of the metric in the window
+     */
+    public Summary getSummary(@NotNull Metric metric) {
+        long currentEpoch = System.nanoTime() / slotNanos;
+        long[] buckets = new long[LogLinearHistogram.BUCKET_COUNT];
+        long total = 0, max = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (currentEpoch - slotEpochs.get(i) >= slots.length) continue;
+            LogLinearHistogram histogram = slots[i][metric.ordinal()];
+            total += histogram.addTo(buckets);
+            max = Math.max(max, histogram.getMax());
+        }
+        return new Summary(metric, total,
+                Math.min(max, LogLinearHistogram.valueAtPercentile(buckets, total, 50)),
+                Math.min(max, LogLinearHistogram.valueAtPercentile(buckets, total, 99)),
+                Math.min(max, LogLinearHistogram.valueAtPercentile(buckets, total, 99.9)),
+                max);
+    }
+
+    /**
+     * @return A table of the summaries of all metrics
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder("Tick timings:");
+        for (Metric metric : METRICS) {
+            Summary s = getSummary(metric);
+            builder.append(String.format("%n  %-12s %8d ticks  p50 %8.3f ms  p99 %8.3f ms  p99.9 %8.3f ms  max %8.3f ms",
+                    metric, s.count(), s.p50() / 1e6, s.p99() / 1e6, s.p999() / 1e6, s.max() / 1e6));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Logs the {@link #report()} periodically until {@link #stopPeriodicLogging()} is called.
+     * @param interval The time between two reports
+     * @param unit     The unit of interval
+     */
+    public synchronized void startPeriodicLogging(long interval, @NotNull TimeUnit unit) {
+        stopPeriodicLogging();
+        logging = logExecutor.scheduleAtFixedRate(() -> Logger.log(LogLevel.INFO, "TickTimings", report()), interval, interval, unit);
+    }
+
+    public synchronized void stopPeriodicLogging() {
+        if (logging == null) return;
+        logging.cancel(false);
+        logging = null;
+    }
+}
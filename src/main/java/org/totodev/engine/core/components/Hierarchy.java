@@ -0,0 +1,226 @@
+package org.totodev.engine.core.components;
+
+import org.jetbrains.annotations.*;
+import org.totodev.engine.ecs.*;
+import org.totodev.engine.resources.scene.ComponentDataModel;
+
+import java.util.Arrays;
+
+/**
+ * Parent/child relationships between entities. An entity is present in this component if it has a parent or children. <br/>
+ * The entities are additionally kept sorted by their depth in {@link #getOrdered()}, so all entities of one level are stored contiguously
+ * and every parent comes before its children. Entities on the same level never depend on each other and can be processed in parallel.
+ */
+public class Hierarchy extends BaseComponent {
+    // All arrays are indexed by entity id
+    // The parent of every entity plus one, so that 0 means no parent
+    private int[] parents = new int[0];
+    private int[] childCounts = new int[0];
+    // The tick the parent of every entity was last changed in
+    private long[] parentTicks = new long[0];
+
+    //region Depth order
+    private int[] ordered = new int[0];
+    private int orderedSize = 0;
+    // Start of every level in ordered, with one more entry for the end of the last level
+    private int[] levelStarts = new int[]{0};
+    private int levelCount = 0;
+    private boolean orderChanged = false;
+    //endregion
+
+    //region Parents
+    /**
+     * @return The parent of the entity, or -1, if it has none
+     */
+    public int getParent(int entityId) {
+        if (entityId >= parents.length) return -1;
+        return parents[entityId] - 1;
+    }
+
+    public boolean hasParent(int entityId) {
+        return getParent(entityId) != -1;
+    }
+
+    /**
+     * @return The number of direct children of the entity
+     */
+    public int getChildCount(int entityId) {
+        if (entityId >= childCounts.length) return 0;
+        return childCounts[entityId];
+    }
+
+    /**
+     * Sets or removes the parent of an entity.
+     * @param entityId The child entity
+     * @param parentId The new parent, or -1, to remove the parent
+     * @throws IllegalArgumentException If the parent is the entity itself or one of its descendants
+     */
+    public void setParent(int entityId, int parentId) {
+        int oldParent = getParent(entityId);
+        if (oldParent == parentId) return;
+
+        for (int p = parentId; p != -1; p = getParent(p))
+            if (p == entityId) throw new IllegalArgumentException("Entity " + parentId + " can not become the parent of its ancestor " + entityId);
+
+        ensureCapacity(Math.max(entityId, parentId) + 1);
+        parents[entityId] = parentId + 1;
+        parentTicks[entityId] = getScene() == null ? 0 : getScene().getChangeTick();
+        orderChanged = true;
+
+        if (oldParent != -1) {
+            childCounts[oldParent]--;
+            presenceChanged(oldParent);
+        }
+        if (parentId != -1) {
+            childCounts[parentId]++;
+            presenceChanged(parentId);
+        }
+        presenceChanged(entityId);
+    }
+
+    public void removeParent(int entityId) {
+        setParent(entityId, -1);
+    }
+
+    /**
+     * @return The tick the parent of the entity was last set or removed in
+     * @see Scene#getChangeTick()
+     */
+    public long getChangeTick(int entityId) {
+        if (entityId >= parentTicks.length) return -1;
+        return parentTicks[entityId];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= parents.length) return;
+        int newCapacity = Math.max(parents.length * 2, capacity);
+        parents = Arrays.copyOf(parents, newCapacity);
+        childCounts = Arrays.copyOf(childCounts, newCapacity);
+        parentTicks = Arrays.copyOf(parentTicks, newCapacity);
+    }
+    //endregion
+
+    //region Depth order
+    /**
+     * The returned array must not be modified and is replaced when the hierarchy changes, so it must be retrieved again after changing parents.
+     * @return All entities in this component sorted by depth, valid up to {@link #getLevelEnd(int) getLevelEnd(getLevelCount() - 1)}
+     */
+    public int[] getOrdered() {
+        updateOrder();
+        return ordered;
+    }
+
+    /**
+     * @return The number of levels, where level 0 contains the roots
+     */
+    public int getLevelCount() {
+        updateOrder();
+        return levelCount;
+    }
+
+    /**
+     * @return The index of the first entity of a level in {@link #getOrdered()}
+     */
+    public int getLevelStart(int level) {
+        updateOrder();
+        return levelStarts[level];
+    }
+
+    /**
+     * @return The index after the last entity of a level in {@link #getOrdered()}
+     */
+    public int getLevelEnd(int level) {
+        updateOrder();
+        return levelStarts[level + 1];
+    }
+
+    /**
+     * Sorts all entities by depth with a counting sort, if the hierarchy changed since the last time.
+     * Synchronized because multiple systems reading the hierarchy in parallel could trigger it at the same time.
+     */
+    private synchronized void updateOrder() {
+        if (!orderChanged) return;
+        orderChanged = false;
+
+        int[] depths = new int[parents.length];
+        Arrays.fill(depths, -1);
+        orderedSize = 0;
+        levelCount = 0;
+        for (int e = 0; e < parents.length; e++) {
+            if (!isPresentOn(e)) continue;
+            levelCount = Math.max(levelCount, depthOf(e, depths) + 1);
+            orderedSize++;
+        }
+
+        levelStarts = new int[levelCount + 1];
+        for (int e = 0; e < parents.length; e++)
+            if (depths[e] != -1) levelStarts[depths[e] + 1]++;
+        for (int level = 0; level < levelCount; level++)
+            levelStarts[level + 1] += levelStarts[level];
+
+        if (ordered.length < orderedSize) ordered = new int[orderedSize];
+        int[] next = Arrays.copyOf(levelStarts, levelCount);
+        for (int e = 0; e < parents.length; e++)
+            if (depths[e] != -1) ordered[next[depths[e]]++] = e;
+    }
+
+    private int depthOf(int entityId, int[] depths) {
+        int depth = 0;
+        int ancestor = entityId;
+        while (depths[ancestor] == -1 && getParent(ancestor) != -1) {
+            ancestor = getParent(ancestor);
+            depth++;
+        }
+        if (depths[ancestor] == -1) depths[ancestor] = 0;
+        depth += depths[ancestor];
+
+        // Store the depth of every entity on the way up, so no chain is walked twice
+        for (int e = entityId, d = depth; e != ancestor; e = getParent(e), d--)
+            depths[e] = d;
+        return depth;
+    }
+    //endregion
+
+    /**
+     * Removes the parent of the entity and detaches all its children, which become roots.
+     */
+    @Override
+    public void resetEntity(int entityId) {
+        removeParent(entityId);
+        if (getChildCount(entityId) == 0) return;
+        for (int e = 0; e < parents.length; e++)
+            if (parents[e] == entityId + 1) removeParent(e);
+    }
+
+    @Override
+    public void resetEntities(@NotNull int[] entityIds) {
+        boolean[] removed = new boolean[parents.length];
+        boolean hasChildren = false;
+        for (int entityId : entityIds) {
+            removeParent(entityId);
+            if (getChildCount(entityId) == 0) continue;
+            removed[entityId] = true;
+            hasChildren = true;
+        }
+        if (!hasChildren) return;
+
+        // Detach the children of all entities in one pass
+        for (int e = 0; e < parents.length; e++)
+            if (parents[e] != 0 && removed[parents[e] - 1]) removeParent(e);
+    }
+
+    @Override
+    public void deserializeState(@NotNull ComponentDataModel data) {
+        setParent(data.entity, Integer.parseInt(data.value));
+    }
+    @Override
+    public @Nullable String serializeState(int entityId) {
+        int parent = getParent(entityId);
+        return parent == -1 ? null : Integer.toString(parent);
+    }
+
+    @Override
+    public boolean isPresentOn(int entityId) {
+        return getParent(entityId) != -1 || getChildCount(entityId) > 0;
+    }
+}
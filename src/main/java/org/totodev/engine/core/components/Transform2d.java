@@ -1,98 +1,208 @@
 package org.totodev.engine.core.components;
 
-import org.eclipse.collections.api.map.primitive.*;
-import org.eclipse.collections.impl.factory.primitive.*;
 import org.jetbrains.annotations.*;
 import org.joml.Vector2f;
-import org.totodev.engine.ecs.Component;
+import org.totodev.engine.ecs.*;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 import org.totodev.engine.util.SerializationUtils;
 
-public class Transform2d implements Component {
-    private final MutableIntObjectMap<Vector2f> positions = IntObjectMaps.mutable.empty();
-    private final MutableIntFloatMap rotations = IntFloatMaps.mutable.empty();
-    private final MutableIntObjectMap<Vector2f> scales = IntObjectMaps.mutable.empty();
+import java.util.Arrays;
+
+/**
+ * Position, rotation and scale of 2d entities. All values are stored in primitive arrays indexed by {@link #indexOf(int)},
+ * which can be accessed directly with the bulk getters to process many entities without allocating anything.
+ */
+public class Transform2d extends SparseSetComponent implements Snapshottable<Transform2d.Snapshot> {
+    /**
+     * A copy of the values of all entities, indexed like the bulk arrays of the component.
+     */
+    public static final class Snapshot extends SparseSetSnapshot {
+        private float[] x = new float[0], y = new float[0], rot = new float[0], sx = new float[0], sy = new float[0];
+
+        public float[] getPositionsX() {
+            return x;
+        }
+        public float[] getPositionsY() {
+            return y;
+        }
+        public float[] getRotations() {
+            return rot;
+        }
+        public float[] getScalesX() {
+            return sx;
+        }
+        public float[] getScalesY() {
+            return sy;
+        }
+    }
+
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] rot = new float[0];
+    private float[] sx = new float[0];
+    private float[] sy = new float[0];
 
     //region Position
     public Vector2f getPosition(int entityId, @NotNull Vector2f out) {
-        Vector2f pos = positions.get(entityId);
-        if (pos == null) return null;
-        return out.set(pos);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(x[i], y[i]);
+    }
+    public float getPositionX(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return x[i];
+    }
+    public float getPositionY(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return y[i];
     }
 
     public void setPosition(int entityId, @NotNull Vector2f pos) {
-        positions.put(entityId, pos);
+        setPosition(entityId, pos.x, pos.y);
     }
     public void setPosition(int entityId, float x, float y) {
-        positions.put(entityId, new Vector2f(x, y));
+        int i = addEntity(entityId);
+        this.x[i] = x;
+        this.y[i] = y;
     }
 
     public void move(int entityId, @NotNull Vector2f posOffset) {
-        Vector2f pos = positions.get(entityId);
-        if (pos == null) return;
-        pos.add(posOffset);
+        move(entityId, posOffset.x, posOffset.y);
     }
     public void move(int entityId, float xOffset, float yOffset) {
-        Vector2f pos = positions.get(entityId);
-        if (pos == null) return;
-        pos.add(xOffset, yOffset);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        x[i] += xOffset;
+        y[i] += yOffset;
+        markChangedAt(i);
     }
     //endregion
 
     //region Rotation
     public float getRotation(int entityId) {
-        return rotations.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return rot[i];
     }
 
     public void setRotation(int entityId, float angle) {
-        rotations.put(entityId, angle);
+        rot[addEntity(entityId)] = angle;
     }
 
     public void rotate(int entityId, float angleOffset) {
-        if (!rotations.containsKey(entityId)) return;
-        rotations.addToValue(entityId, angleOffset);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        rot[i] += angleOffset;
+        markChangedAt(i);
     }
     //endregion
 
     //region Scale
     public Vector2f getScale(int entityId, @NotNull Vector2f out) {
-        Vector2f scale = scales.get(entityId);
-        if (scale == null) return null;
-        return out.set(scale);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(sx[i], sy[i]);
+    }
+    public float getScaleX(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return sx[i];
+    }
+    public float getScaleY(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return sy[i];
     }
 
     public void setScale(int entityId, @NotNull Vector2f scale) {
-        scales.put(entityId, scale);
+        setScale(entityId, scale.x, scale.y);
     }
     public void setScale(int entityId, float x, float y) {
-        scales.put(entityId, new Vector2f(x, y));
+        int i = addEntity(entityId);
+        sx[i] = x;
+        sy[i] = y;
     }
 
     // Multiplier, not offset
     public void scale(int entityId, @NotNull Vector2f scaleMul) {
-        Vector2f scale = scales.get(entityId);
-        if (scale == null) return;
-        scale.mul(scaleMul);
+        scale(entityId, scaleMul.x, scaleMul.y);
     }
     public void scale(int entityId, float xMul, float yMul) {
-        Vector2f scale = scales.get(entityId);
-        if (scale == null) return;
-        scale.mul(xMul, yMul);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        sx[i] *= xMul;
+        sy[i] *= yMul;
+        markChangedAt(i);
     }
     public void scale(int entityId, float scaleMul) {
-        Vector2f scale = scales.get(entityId);
-        if (scale == null) return;
-        scale.mul(scaleMul);
+        scale(entityId, scaleMul, scaleMul);
+    }
+    //endregion
+
+    //region Bulk access
+    // The returned arrays are indexed by indexOf(entityId) and valid up to size().
+    // They are replaced when the component grows, so they must be retrieved again after adding entities.
+    // Call markChangedAt(index) after writing to them.
+    public float[] getPositionsX() {
+        return x;
+    }
+    public float[] getPositionsY() {
+        return y;
+    }
+    public float[] getRotations() {
+        return rot;
+    }
+    public float[] getScalesX() {
+        return sx;
+    }
+    public float[] getScalesY() {
+        return sy;
     }
     //endregion
 
     @Override
-    public void resetEntity(int entityId) {
-        positions.remove(entityId);
-        rotations.remove(entityId);
-        scales.remove(entityId);
+    public @NotNull Snapshot snapshot(@Nullable Snapshot reuse) {
+        Snapshot snapshot = reuse == null ? new Snapshot() : reuse;
+        copyIndexTo(snapshot);
+        snapshot.x = Snapshot.copy(x, snapshot.x, size());
+        snapshot.y = Snapshot.copy(y, snapshot.y, size());
+        snapshot.rot = Snapshot.copy(rot, snapshot.rot, size());
+        snapshot.sx = Snapshot.copy(sx, snapshot.sx, size());
+        snapshot.sy = Snapshot.copy(sy, snapshot.sy, size());
+        return snapshot;
+    }
+
+    //region Storage
+    @Override
+    protected void resizeData(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        rot = Arrays.copyOf(rot, capacity);
+        sx = Arrays.copyOf(sx, capacity);
+        sy = Arrays.copyOf(sy, capacity);
+    }
+
+    @Override
+    protected void moveData(int fromIndex, int toIndex) {
+        x[toIndex] = x[fromIndex];
+        y[toIndex] = y[fromIndex];
+        rot[toIndex] = rot[fromIndex];
+        sx[toIndex] = sx[fromIndex];
+        sy[toIndex] = sy[fromIndex];
     }
 
+    @Override
+    protected void initData(int index) {
+        x[index] = 0;
+        y[index] = 0;
+        rot[index] = 0;
+        sx[index] = 1;
+        sy[index] = 1;
+    }
+    //endregion
+
     @Override
     public void deserializeState(@NotNull ComponentDataModel data) {
         float[] values = SerializationUtils.deserialize(data.value);
@@ -102,14 +212,8 @@ public class Transform2d implements Component {
     }
     @Override
     public @Nullable String serializeState(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        Vector2f pos = positions.get(entityId);
-        Vector2f scale = scales.get(entityId);
-        return SerializationUtils.serialize(pos.x, pos.y, rotations.get(entityId), scale.x, scale.y);
-    }
-
-    @Override
-    public boolean isPresentOn(int entityId) {
-        return positions.containsKey(entityId) && rotations.containsKey(entityId) && scales.containsKey(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return SerializationUtils.serialize(x[i], y[i], rot[i], sx[i], sy[i]);
     }
 }
@@ -1,22 +1,33 @@
 package org.totodev.engine.core.components;
 
-import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
-import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
 import org.jetbrains.annotations.*;
 import org.joml.*;
-import org.totodev.engine.ecs.Component;
+import org.totodev.engine.ecs.SparseSetComponent;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 import org.totodev.engine.util.SerializationUtils;
 
-//TODO: Remake similar to Transform2d
+import java.util.Arrays;
+
 //TODO: Parents, Local/Parent(World)/World(Recursive)
 
 /**
- * CURRENTLY BROKEN
+ * Position, rotation and scale of 3d entities. Like {@link Transform2d}, all values are stored in primitive arrays indexed by {@link #indexOf(int)}.
+ * The rotation is stored as a quaternion, so setting one part of the transform never has to decompose a matrix. <br/>
+ * The model matrix of every entity is cached and only recomputed by {@link #updateMatrices()} if the transform changed since,
+ * so renderers can export the matrices of all entities at once with {@link #getMatrices()}.
  */
-public class Transform3d implements Component {
-    private final MutableIntObjectMap<Matrix4f> transforms = IntObjectMaps.mutable.empty();
+public class Transform3d extends SparseSetComponent {
+    public static final int MATRIX_FLOATS = 16;
+
+    private float[] px = new float[0], py = new float[0], pz = new float[0];
+    private float[] rx = new float[0], ry = new float[0], rz = new float[0], rw = new float[0];
+    private float[] sx = new float[0], sy = new float[0], sz = new float[0];
 
+    // Column-major model matrix of every index, only valid where dirty is false
+    private float[] matrices = new float[0];
+    private boolean[] dirty = new boolean[0];
+
+    //region Position
     /**
      * Gets the position of an entity and stores it in the out-vector.
      * @param entityId The entity to get the position of
@@ -24,99 +35,307 @@ public class Transform3d implements Component {
      * @return out, or null, if this component is not present on that entity
      */
     public Vector3f getPosition(int entityId, @NotNull Vector3f out) {
-        if (!isPresentOn(entityId)) return null;
-        return transforms.get(entityId).getTranslation(out);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(px[i], py[i], pz[i]);
     }
+
     public void setPosition(int entityId, float xPos, float yPos, float zPos) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).setTranslation(xPos, yPos, zPos);
+        int i = addEntity(entityId);
+        px[i] = xPos;
+        py[i] = yPos;
+        pz[i] = zPos;
+        dirty[i] = true;
     }
     public void setPosition(int entityId, @NotNull Vector3f pos) {
         setPosition(entityId, pos.x, pos.y, pos.z);
     }
+
     public void move(int entityId, float xOffset, float yOffset, float zOffset) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).translate(xOffset, yOffset, zOffset);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        px[i] += xOffset;
+        py[i] += yOffset;
+        pz[i] += zOffset;
+        changedAt(i);
     }
     public void move(int entityId, @NotNull Vector3f posOffset) {
         move(entityId, posOffset.x, posOffset.y, posOffset.z);
     }
+    //endregion
 
+    //region Rotation
     public Quaternionf getRotation(int entityId, @NotNull Quaternionf out) {
-        if (!isPresentOn(entityId)) return null;
-        return transforms.get(entityId).getUnnormalizedRotation(out);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(rx[i], ry[i], rz[i], rw[i]);
     }
-    public void setRotation(int entityId, float angleX, float angleY, float angleZ) {
-        setRotation(entityId, new Quaternionf().rotateXYZ(angleX, angleY, angleZ));
+
+    public void setRotation(int entityId, float x, float y, float z, float w) {
+        int i = addEntity(entityId);
+        rx[i] = x;
+        ry[i] = y;
+        rz[i] = z;
+        rw[i] = w;
+        dirty[i] = true;
     }
     public void setRotation(int entityId, @NotNull Quaternionf rot) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).translationRotateScale(
-                getPosition(entityId, new Vector3f()),
-                rot,
-                getScale(entityId, new Vector3f()));
+        setRotation(entityId, rot.x, rot.y, rot.z, rot.w);
     }
-    public void rotate(int entityId, float angleOffsetX, float angleOffsetY, float angleOffsetZ) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).rotateXYZ(angleOffsetX, angleOffsetY, angleOffsetZ);
+    // Euler angles in radians, applied in the order x, y, z
+    public void setRotation(int entityId, float angleX, float angleY, float angleZ) {
+        setRotation(entityId, 0, 0, 0, 1);
+        rotate(entityId, angleX, angleY, angleZ);
+    }
+
+    /**
+     * Rotates an entity around its local axes, like multiplying its model matrix with the rotation.
+     */
+    public void rotate(int entityId, float x, float y, float z, float w) {
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        float qx = rx[i], qy = ry[i], qz = rz[i], qw = rw[i];
+        rx[i] = qw * x + qx * w + qy * z - qz * y;
+        ry[i] = qw * y - qx * z + qy * w + qz * x;
+        rz[i] = qw * z + qx * y - qy * x + qz * w;
+        rw[i] = qw * w - qx * x - qy * y - qz * z;
+        changedAt(i);
     }
     public void rotate(int entityId, @NotNull Quaternionf rotOffset) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).rotate(rotOffset);
+        rotate(entityId, rotOffset.x, rotOffset.y, rotOffset.z, rotOffset.w);
+    }
+    // Euler angles in radians, applied in the order x, y, z
+    public void rotate(int entityId, float angleOffsetX, float angleOffsetY, float angleOffsetZ) {
+        float sinX = (float) Math.sin(angleOffsetX * 0.5f), cosX = (float) Math.cos(angleOffsetX * 0.5f);
+        float sinY = (float) Math.sin(angleOffsetY * 0.5f), cosY = (float) Math.cos(angleOffsetY * 0.5f);
+        float sinZ = (float) Math.sin(angleOffsetZ * 0.5f), cosZ = (float) Math.cos(angleOffsetZ * 0.5f);
+        float cycz = cosY * cosZ, sysz = sinY * sinZ, sycz = sinY * cosZ, cysz = cosY * sinZ;
+        rotate(entityId,
+                sinX * cycz + cosX * sysz,
+                cosX * sycz - sinX * cysz,
+                cosX * cysz + sinX * sycz,
+                cosX * cycz - sinX * sysz);
     }
+    //endregion
 
+    //region Scale
     /**
      * Gets the scale of an entity on all three axes and stores it in the out-vector.
      * @param entityId The entity to get the scale of
-     * @param out      The vector to store the rotation in
+     * @param out      The vector to store the scale in
      * @return out, or null, if this component is not present on that entity
      */
     public Vector3f getScale(int entityId, @NotNull Vector3f out) {
-        if (!isPresentOn(entityId)) return null;
-        return transforms.get(entityId).getScale(out);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(sx[i], sy[i], sz[i]);
     }
+
     public void setScale(int entityId, float scaleX, float scaleY, float scaleZ) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).translationRotateScale(
-                getPosition(entityId, new Vector3f()),
-                getRotation(entityId, new Quaternionf()),
-                new Vector3f(scaleX, scaleY, scaleZ));
+        int i = addEntity(entityId);
+        sx[i] = scaleX;
+        sy[i] = scaleY;
+        sz[i] = scaleZ;
+        dirty[i] = true;
     }
     public void setScale(int entityId, @NotNull Vector3f scale) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).translationRotateScale(
-                getPosition(entityId, new Vector3f()),
-                getRotation(entityId, new Quaternionf()),
-                scale);
+        setScale(entityId, scale.x, scale.y, scale.z);
     }
+
     // Multiplier, not offset
     public void scale(int entityId, float scaleX, float scaleY, float scaleZ) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).scale(scaleX, scaleY, scaleZ);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        sx[i] *= scaleX;
+        sy[i] *= scaleY;
+        sz[i] *= scaleZ;
+        changedAt(i);
     }
     public void scale(int entityId, @NotNull Vector3f scale) {
-        if (!isPresentOn(entityId)) return;
-        transforms.get(entityId).scale(scale);
+        scale(entityId, scale.x, scale.y, scale.z);
+    }
+    //endregion
+
+    //region Matrices
+    /**
+     * Gets the model matrix of an entity. Uses the cached matrix if it is up to date, otherwise computes it without updating the cache.
+     * @return out, or null, if this component is not present on that entity
+     */
+    public Matrix4f getMatrix(int entityId, @NotNull Matrix4f out) {
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        if (!dirty[i]) return out.set(matrices, i * MATRIX_FLOATS);
+        return out.translationRotateScale(px[i], py[i], pz[i], rx[i], ry[i], rz[i], rw[i], sx[i], sy[i], sz[i]);
+    }
+
+    /**
+     * Recomputes the cached matrices of all entities whose transform changed since the last update.
+     * Writes to this component, so it must not run at the same time as systems reading the matrices.
+     */
+    public void updateMatrices() {
+        for (int i = 0; i < size(); i++) {
+            if (!dirty[i]) continue;
+            computeMatrix(i, matrices, i * MATRIX_FLOATS);
+            dirty[i] = false;
+        }
+    }
+
+    /**
+     * Updates all matrices and returns them, so they can be copied into a GPU buffer as a whole.
+     * @return The column-major model matrices of all entities, {@link #MATRIX_FLOATS} floats per index, valid up to {@code size() * MATRIX_FLOATS}.
+     * The array is replaced when the component grows, so it must be retrieved again after adding entities.
+     */
+    public float[] getMatrices() {
+        updateMatrices();
+        return matrices;
     }
 
+    // Same result as Matrix4f.translationRotateScale
+    private void computeMatrix(int i, float[] out, int offset) {
+        float qx = rx[i], qy = ry[i], qz = rz[i], qw = rw[i];
+        float dqx = qx + qx, dqy = qy + qy, dqz = qz + qz;
+        float q00 = dqx * qx, q11 = dqy * qy, q22 = dqz * qz;
+        float q01 = dqx * qy, q02 = dqx * qz, q03 = dqx * qw;
+        float q12 = dqy * qz, q13 = dqy * qw, q23 = dqz * qw;
+
+        out[offset] = sx[i] - (q11 + q22) * sx[i];
+        out[offset + 1] = (q01 + q23) * sx[i];
+        out[offset + 2] = (q02 - q13) * sx[i];
+        out[offset + 3] = 0;
+        out[offset + 4] = (q01 - q23) * sy[i];
+        out[offset + 5] = sy[i] - (q22 + q00) * sy[i];
+        out[offset + 6] = (q12 + q03) * sy[i];
+        out[offset + 7] = 0;
+        out[offset + 8] = (q02 + q13) * sz[i];
+        out[offset + 9] = (q12 - q03) * sz[i];
+        out[offset + 10] = sz[i] - (q11 + q00) * sz[i];
+        out[offset + 11] = 0;
+        out[offset + 12] = px[i];
+        out[offset + 13] = py[i];
+        out[offset + 14] = pz[i];
+        out[offset + 15] = 1;
+    }
+
+    private void changedAt(int index) {
+        dirty[index] = true;
+        markChangedAt(index);
+    }
+    //endregion
+
+    //region Bulk access
+    // The returned arrays are indexed by indexOf(entityId) and valid up to size().
+    // They are replaced when the component grows, so they must be retrieved again after adding entities.
+    // Call markDirtyAt(index) after writing to them.
+    public float[] getPositionsX() {
+        return px;
+    }
+    public float[] getPositionsY() {
+        return py;
+    }
+    public float[] getPositionsZ() {
+        return pz;
+    }
+    public float[] getRotationsX() {
+        return rx;
+    }
+    public float[] getRotationsY() {
+        return ry;
+    }
+    public float[] getRotationsZ() {
+        return rz;
+    }
+    public float[] getRotationsW() {
+        return rw;
+    }
+    public float[] getScalesX() {
+        return sx;
+    }
+    public float[] getScalesY() {
+        return sy;
+    }
+    public float[] getScalesZ() {
+        return sz;
+    }
+
+    /**
+     * Marks the transform at a dense index as changed, so its matrix is recomputed on the next update.
+     * @param index The dense index that was written through the bulk arrays
+     */
+    public void markDirtyAt(int index) {
+        changedAt(index);
+    }
+    //endregion
+
+    //region Storage
     @Override
-    public void resetEntity(int entityId) {
-        transforms.remove(entityId);
+    protected void resizeData(int capacity) {
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        pz = Arrays.copyOf(pz, capacity);
+        rx = Arrays.copyOf(rx, capacity);
+        ry = Arrays.copyOf(ry, capacity);
+        rz = Arrays.copyOf(rz, capacity);
+        rw = Arrays.copyOf(rw, capacity);
+        sx = Arrays.copyOf(sx, capacity);
+        sy = Arrays.copyOf(sy, capacity);
+        sz = Arrays.copyOf(sz, capacity);
+        matrices = Arrays.copyOf(matrices, capacity * MATRIX_FLOATS);
+        dirty = Arrays.copyOf(dirty, capacity);
     }
 
     @Override
-    public void deserializeState(@NotNull ComponentDataModel data) {
-        transforms.put(data.entity, new Matrix4f());
-        transforms.get(data.entity).set(SerializationUtils.deserialize(data.value));
+    protected void moveData(int fromIndex, int toIndex) {
+        px[toIndex] = px[fromIndex];
+        py[toIndex] = py[fromIndex];
+        pz[toIndex] = pz[fromIndex];
+        rx[toIndex] = rx[fromIndex];
+        ry[toIndex] = ry[fromIndex];
+        rz[toIndex] = rz[fromIndex];
+        rw[toIndex] = rw[fromIndex];
+        sx[toIndex] = sx[fromIndex];
+        sy[toIndex] = sy[fromIndex];
+        sz[toIndex] = sz[fromIndex];
+        System.arraycopy(matrices, fromIndex * MATRIX_FLOATS, matrices, toIndex * MATRIX_FLOATS, MATRIX_FLOATS);
+        dirty[toIndex] = dirty[fromIndex];
     }
+
     @Override
-    public @Nullable String serializeState(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        return SerializationUtils.serialize(transforms.get(entityId).get(new float[16]));
+    protected void initData(int index) {
+        px[index] = 0;
+        py[index] = 0;
+        pz[index] = 0;
+        rx[index] = 0;
+        ry[index] = 0;
+        rz[index] = 0;
+        rw[index] = 1;
+        sx[index] = 1;
+        sy[index] = 1;
+        sz[index] = 1;
+        dirty[index] = true;
     }
+    //endregion
 
+    /**
+     * Reads position, rotation quaternion and scale as 10 values. A full matrix of 16 values is also accepted and decomposed once.
+     */
     @Override
-    public boolean isPresentOn(int entityId) {
-        return transforms.containsKey(entityId);
+    public void deserializeState(@NotNull ComponentDataModel data) {
+        float[] values = SerializationUtils.deserialize(data.value);
+        if (values.length == MATRIX_FLOATS) {
+            Matrix4f matrix = new Matrix4f().set(values);
+            setPosition(data.entity, matrix.getTranslation(new Vector3f()));
+            setRotation(data.entity, matrix.getNormalizedRotation(new Quaternionf()));
+            setScale(data.entity, matrix.getScale(new Vector3f()));
+            return;
+        }
+        setPosition(data.entity, values[0], values[1], values[2]);
+        setRotation(data.entity, values[3], values[4], values[5], values[6]);
+        setScale(data.entity, values[7], values[8], values[9]);
+    }
+    @Override
+    public @Nullable String serializeState(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return SerializationUtils.serialize(px[i], py[i], pz[i], rx[i], ry[i], rz[i], rw[i], sx[i], sy[i], sz[i]);
     }
 }
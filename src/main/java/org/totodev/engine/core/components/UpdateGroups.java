@@ -0,0 +1,85 @@
+package org.totodev.engine.core.components;
+
+import org.eclipse.collections.api.block.procedure.primitive.ObjectIntProcedure;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.factory.primitive.ObjectIntMaps;
+import org.jetbrains.annotations.NotNull;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.GlobalComponent;
+
+/**
+ * Named groups of systems that are updated at their own rate, independent of the {@link UpdateRate} of the scene.
+ * Every group has its own update events, named like {@code "Physics:Update"}, see {@link #eventName(String, String)}.
+ * The {@link Updater} runs the groups between its own updates, always the group whose update is due first, on the same thread.
+ * Groups always get the same delta time of one interval.
+ */
+public class UpdateGroups implements GlobalComponent {
+    private final MutableObjectIntMap<String> rates = ObjectIntMaps.mutable.empty();
+    private volatile int version = 0;
+
+    /**
+     * @param group The name of the group
+     * @param phase {@link Updater#EVENT_PRE_UPDATE}, {@link Updater#EVENT_UPDATE} or {@link Updater#EVENT_POST_UPDATE}
+     * @return The name of the event of the phase of the group
+     */
+    public static String eventName(@NotNull String group, @NotNull String phase) {
+        return group + ":" + phase;
+    }
+
+    /**
+     * Adds a group or changes its rate.
+     * @param group The name of the group
+     * @param rate  How often the group is updated per second
+     */
+    public synchronized void setRate(@NotNull String group, int rate) {
+        if (rate < 1) throw new IllegalArgumentException("Update rate must be at least 1, was " + rate);
+        rates.put(group, rate);
+        version++;
+    }
+
+    /**
+     * @return How often the group is updated per second, or 0, if there is no group with that name
+     */
+    public synchronized int getRate(@NotNull String group) {
+        return rates.getIfAbsent(group, 0);
+    }
+
+    public synchronized void removeGroup(@NotNull String group) {
+        rates.removeKey(group);
+        version++;
+    }
+
+    /**
+     * Calls the procedure with the name and rate of every group, while no group can be changed.
+     */
+    public synchronized void forEachGroup(@NotNull ObjectIntProcedure<String> procedure) {
+        rates.forEachKeyValue(procedure);
+    }
+
+    /**
+     * @return A number that changes whenever a group is added, removed or changed
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public synchronized String serializeState() {
+        StringBuilder builder = new StringBuilder();
+        rates.forEachKeyValue((group, rate) -> {
+            if (!builder.isEmpty()) builder.append(',');
+            builder.append(group).append('=').append(rate);
+        });
+        return builder.toString();
+    }
+
+    public synchronized void deserializeState(String data) {
+        rates.clear();
+        if (!data.isBlank()) {
+            for (String entry : data.split(",")) {
+                String[] parts = entry.split("=");
+                rates.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+            }
+        }
+        version++;
+    }
+}
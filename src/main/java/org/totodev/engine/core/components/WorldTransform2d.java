@@ -0,0 +1,135 @@
+package org.totodev.engine.core.components;
+
+import org.jetbrains.annotations.*;
+import org.joml.Matrix3x2f;
+import org.totodev.engine.ecs.*;
+
+import java.util.Arrays;
+
+/**
+ * Cached world space matrices of all 2d entities, computed from their {@link Transform2d} and {@link Hierarchy}
+ * by the {@link org.totodev.engine.core.systems.TransformPropagator2d TransformPropagator2d}. <br/>
+ * The data is stored in arrays indexed by entity id instead of being a component of every entity, so the matrices
+ * of many entities can be written in parallel without changing which entities a component is present on.
+ * The state is derived and therefore not serialized.
+ */
+public class WorldTransform2d implements GlobalComponent, Snapshottable<WorldTransform2d.Snapshot> {
+    // Matrix3x2f layout: m00, m01, m10, m11, m20, m21
+    public static final int FLOATS = 6;
+
+    /**
+     * A copy of the matrices of all entities, indexed like {@link #getMatrices()}.
+     */
+    public static final class Snapshot {
+        private float[] matrices = new float[0];
+        private boolean[] computed = new boolean[0];
+        private int capacity = 0;
+
+        public boolean isComputed(int entityId) {
+            return entityId < capacity && computed[entityId];
+        }
+
+        // Indexed by entityId * FLOATS
+        public float[] getMatrices() {
+            return matrices;
+        }
+    }
+
+    private float[] matrices = new float[0];
+    // The tick the matrix of every entity was computed in, or 0, if it was not computed yet
+    private long[] ticks = new long[0];
+
+    /**
+     * Grows the arrays so that all entity ids below the capacity can be written. Must not be called while matrices are written in parallel.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= ticks.length) return;
+        int newCapacity = Math.max(ticks.length * 2, capacity);
+        matrices = Arrays.copyOf(matrices, newCapacity * FLOATS);
+        ticks = Arrays.copyOf(ticks, newCapacity);
+    }
+
+    public boolean isComputed(int entityId) {
+        return entityId < ticks.length && ticks[entityId] != 0;
+    }
+
+    /**
+     * @return The tick the world matrix of the entity was last computed in, or 0, if it was not computed yet
+     */
+    public long getChangeTick(int entityId) {
+        return entityId < ticks.length ? ticks[entityId] : 0;
+    }
+
+    /**
+     * @return The world matrix of the entity written to out, or null, if it was not computed yet
+     */
+    public @Nullable Matrix3x2f getMatrix(int entityId, @NotNull Matrix3x2f out) {
+        if (!isComputed(entityId)) return null;
+        int i = entityId * FLOATS;
+        return out.set(matrices[i], matrices[i + 1], matrices[i + 2], matrices[i + 3], matrices[i + 4], matrices[i + 5]);
+    }
+
+    public float getPositionX(int entityId) {
+        return isComputed(entityId) ? matrices[entityId * FLOATS + 4] : 0;
+    }
+    public float getPositionY(int entityId) {
+        return isComputed(entityId) ? matrices[entityId * FLOATS + 5] : 0;
+    }
+
+    /**
+     * Stores the world matrix of an entity. The capacity must have been ensured beforehand.
+     * @param tick The current tick
+     */
+    public void setMatrix(int entityId, float m00, float m01, float m10, float m11, float m20, float m21, long tick) {
+        int i = entityId * FLOATS;
+        matrices[i] = m00;
+        matrices[i + 1] = m01;
+        matrices[i + 2] = m10;
+        matrices[i + 3] = m11;
+        matrices[i + 4] = m20;
+        matrices[i + 5] = m21;
+        ticks[entityId] = tick;
+    }
+
+    /**
+     * Marks the matrix of an entity as not computed, for example after it was destroyed.
+     */
+    public void invalidate(int entityId) {
+        if (entityId < ticks.length) ticks[entityId] = 0;
+    }
+
+    /**
+     * Marks the matrices of all entities as not computed.
+     */
+    public void invalidateAll() {
+        Arrays.fill(ticks, 0);
+    }
+
+    //region Bulk access
+    // Indexed by entityId * FLOATS, replaced when the capacity grows
+    public float[] getMatrices() {
+        return matrices;
+    }
+    //endregion
+
+    @Override
+    public @NotNull Snapshot snapshot(@Nullable Snapshot reuse) {
+        Snapshot snapshot = reuse == null ? new Snapshot() : reuse;
+        int capacity = ticks.length;
+        if (snapshot.computed.length < capacity) {
+            snapshot.matrices = new float[capacity * FLOATS];
+            snapshot.computed = new boolean[capacity];
+        }
+        System.arraycopy(matrices, 0, snapshot.matrices, 0, capacity * FLOATS);
+        for (int i = 0; i < capacity; i++)
+            snapshot.computed[i] = ticks[i] != 0;
+        snapshot.capacity = capacity;
+        return snapshot;
+    }
+
+    public String serializeState() {
+        return "";
+    }
+    public void deserializeState(String data) {
+    }
+}
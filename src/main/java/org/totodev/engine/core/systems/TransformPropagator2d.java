@@ -0,0 +1,123 @@
+package org.totodev.engine.core.systems;
+
+import org.totodev.engine.core.CoreEvents;
+import org.totodev.engine.core.components.*;
+import org.totodev.engine.ecs.*;
+
+/**
+ * Computes the {@link WorldTransform2d world matrices} of all entities with a {@link Transform2d}, applying the transforms of their parents in the {@link Hierarchy}.
+ * A matrix is only recomputed if the local transform or parent of the entity changed, or the world matrix of its parent was recomputed.
+ * Entities without a parent are processed first, then every level of the hierarchy in order, each in parallel chunks. <br/>
+ * Runs late in {@link Updater#EVENT_POST_UPDATE}, so the matrices include all changes of the current update.
+ */
+public class TransformPropagator2d extends BaseSystem {
+    @CachedComponent(AccessMode.READ)
+    private Transform2d transform;
+    @CachedComponent(AccessMode.READ)
+    private Hierarchy hierarchy;
+    @CachedComponent
+    private WorldTransform2d worldTransform;
+
+    private Query transforms;
+    // The tick of the last run, every change in or after it has to be propagated
+    private long lastRunTick = 0;
+
+    @Override
+    public void start(Scene scene) {
+        if (!scene.hasComponent(Hierarchy.class))
+            scene.addComponent(new Hierarchy());
+        if (!scene.hasGlobalComponent(WorldTransform2d.class))
+            scene.addGlobalComponent(new WorldTransform2d());
+        super.start(scene);
+        transforms = scene.query(Transform2d.class);
+        lastRunTick = 0;
+    }
+
+    @EventSubscriber(value = Updater.EVENT_POST_UPDATE, priority = -100)
+    public void propagate(float deltaTime) {
+        long tick = getScene().getChangeTick();
+        worldTransform.ensureCapacity(getScene().getIdRange());
+
+        getScene().forEachChunk(transforms, (entities, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int e = entities[i];
+                if (hierarchy.hasParent(e) || !isDirty(e)) continue;
+                computeWorld(e, -1, tick);
+            }
+        });
+
+        // Parents are always on a lower level than their children, so every level only reads matrices computed in an earlier pass
+        int[] ordered = hierarchy.getOrdered();
+        for (int level = 1; level < hierarchy.getLevelCount(); level++) {
+            Query.forEachChunk(ordered, hierarchy.getLevelStart(level), hierarchy.getLevelEnd(level), Query.DEFAULT_GRAIN_SIZE, (entities, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int e = entities[i];
+                    int parent = hierarchy.getParent(e);
+                    if (!isDirty(e) && worldTransform.getChangeTick(parent) < tick) continue;
+                    computeWorld(e, parent, tick);
+                }
+            }, getScene().events.getExecutor());
+        }
+
+        lastRunTick = tick;
+    }
+
+    /**
+     * Invalidates the matrix of a destroyed entity, so an entity reusing its id is not treated as computed.
+     * Also fired for every entity of a batch.
+     */
+    @EventSubscriber(CoreEvents.ENTITY_DESTROYED)
+    public void entityDestroyed(int entityId) {
+        if (worldTransform != null) worldTransform.invalidate(entityId);
+    }
+
+    /**
+     * Invalidates all matrices once the transforms they were computed from are removed.
+     */
+    @EventSubscriber(CoreEvents.COMPONENT_REMOVED)
+    public void transformRemoved(Component component) {
+        if (component instanceof Transform2d && worldTransform != null) worldTransform.invalidateAll();
+    }
+
+    private boolean isDirty(int entityId) {
+        return !worldTransform.isComputed(entityId)
+                || transform.changedSince(entityId, lastRunTick)
+                || hierarchy.getChangeTick(entityId) >= lastRunTick;
+    }
+
+    /**
+     * Computes world = parent * local and stores it. Entities without a transform use the identity as local matrix.
+     */
+    private void computeWorld(int entityId, int parentId, long tick) {
+        float l00 = 1, l01 = 0, l10 = 0, l11 = 1, l20 = 0, l21 = 0;
+        int t = transform.indexOf(entityId);
+        if (t != -1) {
+            float rot = transform.getRotations()[t];
+            float sx = transform.getScalesX()[t], sy = transform.getScalesY()[t];
+            float cos = (float) Math.cos(rot), sin = (float) Math.sin(rot);
+            l00 = cos * sx;
+            l01 = sin * sx;
+            l10 = -sin * sy;
+            l11 = cos * sy;
+            l20 = transform.getPositionsX()[t];
+            l21 = transform.getPositionsY()[t];
+        }
+
+        if (parentId == -1 || !worldTransform.isComputed(parentId)) {
+            worldTransform.setMatrix(entityId, l00, l01, l10, l11, l20, l21, tick);
+            return;
+        }
+
+        float[] m = worldTransform.getMatrices();
+        int p = parentId * WorldTransform2d.FLOATS;
+        float p00 = m[p], p01 = m[p + 1], p10 = m[p + 2], p11 = m[p + 3], p20 = m[p + 4], p21 = m[p + 5];
+        worldTransform.setMatrix(entityId,
+                p00 * l00 + p10 * l01,
+                p01 * l00 + p11 * l01,
+                p00 * l10 + p10 * l11,
+                p01 * l10 + p11 * l11,
+                p00 * l20 + p10 * l21 + p20,
+                p01 * l20 + p11 * l21 + p21,
+                tick);
+    }
+}
@@ -1,51 +1,402 @@
 package org.totodev.engine.core.systems;
 
+import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.api.list.MutableList;
 import org.lwjgl.glfw.GLFW;
-import org.totodev.engine.core.Engine;
-import org.totodev.engine.core.components.UpdateRate;
+import org.jetbrains.annotations.Nullable;
+import org.totodev.engine.core.*;
+import org.totodev.engine.core.components.*;
 import org.totodev.engine.ecs.*;
 
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Updates its scene {@link UpdateRate#updateRate} times per second. By default every updater runs its own thread,
+ * which can be disabled with {@link #setRunInOwnThread(boolean)} to drive the scene with {@link #tick(float)} instead,
+ * for example from a {@link org.totodev.engine.core.SceneRuntime SceneRuntime}. <br/>
+ * Between its own updates, the updater also runs the {@link UpdateGroups update groups} of the scene at their own rates.
+ */
 public class Updater extends BaseSystem {
     public static final String EVENT_PRE_UPDATE = "PreUpdate";
     public static final String EVENT_UPDATE = "Update";
     public static final String EVENT_POST_UPDATE = "PostUpdate";
+    private static final int PRE_UPDATE_ID = EventRegistry.getId(EVENT_PRE_UPDATE);
+    private static final int UPDATE_ID = EventRegistry.getId(EVENT_UPDATE);
+    private static final int POST_UPDATE_ID = EventRegistry.getId(EVENT_POST_UPDATE);
+
+    /**
+     * The schedule of one {@link UpdateGroups update group}.
+     */
+    private static final class Group {
+        private final String name;
+        private final long intervalNanos;
+        private final int preUpdateId, updateId, postUpdateId;
+        private long deadline;
+
+        private Group(String name, int rate, long deadline) {
+            this.name = name;
+            this.intervalNanos = 1000000000L / rate;
+            this.preUpdateId = EventRegistry.getId(UpdateGroups.eventName(name, EVENT_PRE_UPDATE));
+            this.updateId = EventRegistry.getId(UpdateGroups.eventName(name, EVENT_UPDATE));
+            this.postUpdateId = EventRegistry.getId(UpdateGroups.eventName(name, EVENT_POST_UPDATE));
+            this.deadline = deadline;
+        }
+    }
 
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private UpdateRate updateRate;
+    @CachedComponent(AccessMode.READ)
+    private UpdateGroups updateGroups;
+    private Group[] groups = new Group[0];
+    private int groupsVersion = -1;
+
+    // How long before the next update the loop stops parking and spins instead, because parking can wake up late
+    private static final long SPIN_NANOS = 200_000;
 
     private long lastFrameNanos;
+    private boolean fixedStep = false;
+    private int maxCatchUpSteps = 5;
+    private volatile float interpolationAlpha = 0;
+    // The state of the fixed step, see runFixedSteps
+    private boolean fixedStepStarted = false;
+    private long previousStepNanos;
+    private long accumulatorNanos;
+
+    private boolean runInOwnThread = true;
+    private volatile Thread currentLoop;
+    private volatile EventJournal journal;
+    private final TickTimings timings = new TickTimings();
 
-    private Thread currentLoop;
+    private boolean parallelPhases = false;
 
     public void start(Scene scene) {
         super.start(scene);
+        if (parallelPhases) applyParallelPhases(scene);
+        if (runInOwnThread) startLoop(scene);
+    }
+
+    /**
+     * Sets whether the update events and the events of the {@link UpdateGroups update groups} are {@link EventManager#setParallel(String, boolean) parallel}.
+     * Disabled by default, because the subscribers of parallel events must not create or destroy entities or add or remove components,
+     * except through the {@link Scene#getCommandBuffer() command buffer}. Only enable it if all systems of the scene follow that rule.
+     * @param parallelPhases True to run the systems of every update phase in parallel
+     */
+    public void setParallelPhases(boolean parallelPhases) {
+        this.parallelPhases = parallelPhases;
+        if (getScene() != null) applyParallelPhases(getScene());
+    }
+
+    public boolean isParallelPhases() {
+        return parallelPhases;
+    }
+
+    private void applyParallelPhases(Scene scene) {
+        scene.events.setParallel(EVENT_PRE_UPDATE, parallelPhases);
+        scene.events.setParallel(EVENT_UPDATE, parallelPhases);
+        scene.events.setParallel(EVENT_POST_UPDATE, parallelPhases);
+        for (Group group : groups)
+            setGroupParallel(scene.events, group.name);
+    }
+
+    private void setGroupParallel(EventManager events, String name) {
+        events.setParallel(UpdateGroups.eventName(name, EVENT_PRE_UPDATE), parallelPhases);
+        events.setParallel(UpdateGroups.eventName(name, EVENT_UPDATE), parallelPhases);
+        events.setParallel(UpdateGroups.eventName(name, EVENT_POST_UPDATE), parallelPhases);
+    }
+
+    /**
+     * Sets whether this updater runs its own update loop. Stops or starts the loop if the scene is already running.
+     * When the loop is stopped, this waits until its current update is finished.
+     * @param runInOwnThread False, if the scene is updated by calling {@link #tick(float)} from the outside
+     */
+    public void setRunInOwnThread(boolean runInOwnThread) {
+        this.runInOwnThread = runInOwnThread;
+        if (!runInOwnThread && currentLoop != null) {
+            stopLoop();
+        } else if (runInOwnThread && currentLoop == null && getScene() != null && getScene().isRunning()) {
+            startLoop(getScene());
+        }
+    }
+
+    public boolean isRunInOwnThread() {
+        return runInOwnThread;
+    }
+
+    private void startLoop(Scene scene) {
         currentLoop = new Thread(() -> updateLoop(scene));
         currentLoop.start();
     }
 
+    /**
+     * Interrupts the own update loop and waits until its current update is finished, so no other thread updates the scene at the same time.
+     */
+    private void stopLoop() {
+        Thread loop = currentLoop;
+        if (loop == null) return;
+        currentLoop = null;
+        loop.interrupt();
+        if (loop == Thread.currentThread()) return;
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void updateLoop(Scene scene) {
         while (!scene.isRunning()) {
             try {
                 Thread.sleep(10);
             } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                return;
             }
         }
-        //TODO: Proper update scheduling
+        if (fixedStep) runFixedStep();
+        else runVariableStep();
+    }
+
+    private void runVariableStep() {
+        lastFrameNanos = java.lang.System.nanoTime();
         while (!Thread.interrupted()) {
+            long groupDeadline = runGroups(java.lang.System.nanoTime());
+            if (!waitUntil(Math.min(lastFrameNanos + getTickIntervalNanos(), groupDeadline))) return;
+
             long currentNanos = java.lang.System.nanoTime();
-            if (currentNanos > lastFrameNanos + (1000000000 / (updateRate == null ? 60 : updateRate.updateRate))) {
-                Engine.executeOnMainThread(GLFW::glfwPollEvents);
-                scene.events.invokeEvent(EVENT_PRE_UPDATE, (currentNanos - lastFrameNanos) / 1000000000f);
-                scene.events.invokeEvent(EVENT_UPDATE, (currentNanos - lastFrameNanos) / 1000000000f);
-                scene.events.invokeEvent(EVENT_POST_UPDATE, (currentNanos - lastFrameNanos) / 1000000000f);
-                lastFrameNanos = currentNanos;
-            }
+            if (currentNanos - lastFrameNanos < getTickIntervalNanos()) continue;
+            pollWindowEvents();
+            tick((currentNanos - lastFrameNanos) / 1000000000f);
+            lastFrameNanos = currentNanos;
+        }
+    }
+
+    private void runFixedStep() {
+        fixedStepStarted = false;
+        while (!Thread.interrupted()) {
+            long currentNanos = java.lang.System.nanoTime();
+            long nextStep = runFixedSteps(currentNanos);
+            long groupDeadline = runGroups(currentNanos);
+            if (!waitUntil(Math.min(nextStep, groupDeadline))) return;
+        }
+    }
+
+    /**
+     * Runs updates with a constant delta time. The time that passed since the last call is collected and consumed in steps of the tick interval,
+     * so the simulation keeps its pace even if single updates are late. If more than {@link #setMaxCatchUpSteps max catch up steps} are due,
+     * the rest is dropped instead of making the next frames even later. The first call only starts measuring the time. <br/>
+     * Called by the own update loop with a {@link #setFixedStep fixed step}, and from the outside when the updater does not {@link #setRunInOwnThread run in its own thread}.
+     * @param nowNanos The current {@link java.lang.System#nanoTime() time}
+     * @return The time the next update is due
+     */
+    public long runFixedSteps(long nowNanos) {
+        long step = getTickIntervalNanos();
+        if (!fixedStepStarted) {
+            fixedStepStarted = true;
+            previousStepNanos = nowNanos;
+            accumulatorNanos = 0;
         }
+        accumulatorNanos = Math.min(accumulatorNanos + nowNanos - previousStepNanos, step * maxCatchUpSteps);
+        previousStepNanos = nowNanos;
+
+        if (accumulatorNanos >= step) pollWindowEvents();
+        while (accumulatorNanos >= step) {
+            tick(step / 1000000000f);
+            accumulatorNanos -= step;
+        }
+        interpolationAlpha = (float) accumulatorNanos / step;
+        return nowNanos + step - accumulatorNanos;
+    }
+
+    private static void pollWindowEvents() {
+        if (Engine.hasGraphics()) Engine.executeOnMainThread(GLFW::glfwPollEvents);
+    }
+
+    /**
+     * Parks the thread until shortly before the deadline and spins for the rest, so idle loops use almost no CPU without waking up late.
+     * @return False, if the thread was interrupted while waiting
+     */
+    private static boolean waitUntil(long deadlineNanos) {
+        while (true) {
+            long remaining = deadlineNanos - java.lang.System.nanoTime();
+            if (remaining <= 0) return true;
+            if (Thread.currentThread().isInterrupted()) return false;
+            if (remaining > SPIN_NANOS) LockSupport.parkNanos(remaining - SPIN_NANOS);
+            else Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Runs one update of the scene: the events injected into the {@link #setJournal journal}, all update events, the playback of the command buffers and the publishing of the snapshots.
+     * Must not be called from multiple threads at the same time.
+     * @param deltaTime The time since the last update in seconds
+     */
+    public void tick(float deltaTime) {
+        Scene scene = getScene();
+        EventJournal journal = this.journal;
+        if (journal != null) journal.beginTick(scene, deltaTime);
+        long start = java.lang.System.nanoTime();
+        scene.advanceChangeTick();
+        scene.events.invokeEvent(PRE_UPDATE_ID, deltaTime);
+        long preUpdateEnd = java.lang.System.nanoTime();
+        scene.playbackCommands();
+        long updateStart = java.lang.System.nanoTime();
+        scene.events.invokeEvent(UPDATE_ID, deltaTime);
+        long updateEnd = java.lang.System.nanoTime();
+        scene.playbackCommands();
+        long postUpdateStart = java.lang.System.nanoTime();
+        scene.events.invokeEvent(POST_UPDATE_ID, deltaTime);
+        long postUpdateEnd = java.lang.System.nanoTime();
+        scene.playbackCommands();
+        scene.snapshots.publish();
+        long end = java.lang.System.nanoTime();
+
+        timings.record(TickTimings.Metric.PRE_UPDATE, preUpdateEnd - start, end);
+        timings.record(TickTimings.Metric.UPDATE, updateEnd - updateStart, end);
+        timings.record(TickTimings.Metric.POST_UPDATE, postUpdateEnd - postUpdateStart, end);
+        timings.record(TickTimings.Metric.TICK, end - start, end);
+    }
+
+    /**
+     * @return The durations of the updates of this updater over the last seconds
+     */
+    public TickTimings getTimings() {
+        return timings;
+    }
+
+    //region Update groups
+    /**
+     * Runs all {@link UpdateGroups update groups} whose update is due, the earliest first.
+     * Groups that fell more than {@link #setMaxCatchUpSteps max catch up steps} behind skip the missed updates.
+     * Called by the own update loop, and from the outside when the updater does not {@link #setRunInOwnThread run in its own thread}.
+     * @param nowNanos The current {@link java.lang.System#nanoTime() time}
+     * @return The time the next group update is due, or {@link Long#MAX_VALUE}, if the scene has no update groups
+     */
+    public long runGroups(long nowNanos) {
+        Group[] groups = getGroups(nowNanos);
+        if (groups.length == 0) return Long.MAX_VALUE;
+
+        while (true) {
+            Group next = null;
+            for (Group group : groups)
+                if (group.deadline <= nowNanos && (next == null || group.deadline < next.deadline)) next = group;
+            if (next == null) break;
+
+            tickGroup(next.name, next.preUpdateId, next.updateId, next.postUpdateId, next.intervalNanos / 1000000000f);
+
+            next.deadline += next.intervalNanos;
+            if (nowNanos - next.deadline > next.intervalNanos * maxCatchUpSteps) next.deadline = nowNanos;
+        }
+
+        long earliest = Long.MAX_VALUE;
+        for (Group group : groups)
+            earliest = Math.min(earliest, group.deadline);
+        return earliest;
+    }
+
+    /**
+     * Runs one update of an update group, regardless of its schedule, for example to replay a {@link EventJournal journal}.
+     * Must not be called from multiple threads at the same time, or while the updater runs its own thread.
+     * @param group     The name of the group
+     * @param deltaTime The time since the last update of the group in seconds
+     */
+    public void tickGroup(String group, float deltaTime) {
+        tickGroup(group,
+                EventRegistry.getId(UpdateGroups.eventName(group, EVENT_PRE_UPDATE)),
+                EventRegistry.getId(UpdateGroups.eventName(group, EVENT_UPDATE)),
+                EventRegistry.getId(UpdateGroups.eventName(group, EVENT_POST_UPDATE)),
+                deltaTime);
+    }
+
+    private void tickGroup(String group, int preUpdateId, int updateId, int postUpdateId, float deltaTime) {
+        Scene scene = getScene();
+        EventJournal journal = this.journal;
+        if (journal != null) journal.recordGroup(group, deltaTime);
+        long start = java.lang.System.nanoTime();
+        scene.events.invokeEvent(preUpdateId, deltaTime);
+        scene.playbackCommands();
+        scene.events.invokeEvent(updateId, deltaTime);
+        scene.playbackCommands();
+        scene.events.invokeEvent(postUpdateId, deltaTime);
+        scene.playbackCommands();
+        long end = java.lang.System.nanoTime();
+        timings.record(TickTimings.Metric.GROUP, end - start, end);
+    }
+
+    /**
+     * Rebuilds the group schedules when the update groups changed. Groups that already existed keep their deadline.
+     */
+    private Group[] getGroups(long nowNanos) {
+        UpdateGroups updateGroups = this.updateGroups;
+        if (updateGroups == null) return groups = new Group[0];
+        if (updateGroups.getVersion() == groupsVersion) return groups;
+
+        groupsVersion = updateGroups.getVersion();
+        Group[] old = groups;
+        MutableList<Group> rebuilt = Lists.mutable.empty();
+        updateGroups.forEachGroup((name, rate) -> {
+            long deadline = nowNanos;
+            for (Group group : old)
+                if (group.name.equals(name)) deadline = group.deadline;
+            rebuilt.add(new Group(name, rate, deadline));
+            if (parallelPhases) setGroupParallel(getScene().events, name);
+        });
+        return groups = rebuilt.toArray(new Group[0]);
+    }
+    //endregion
+
+    /**
+     * Starts or stops recording this scene. While a journal is set, the events injected into it are delivered at the start of every update.
+     * @param journal The journal to record to, or null, to stop recording. The old journal is not closed.
+     */
+    public void setJournal(@Nullable EventJournal journal) {
+        this.journal = journal;
+    }
+
+    public @Nullable EventJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets whether the own update loop runs with a fixed step. With a fixed step, every update gets the same delta time of one tick interval,
+     * and missed updates are caught up on, up to {@link #setMaxCatchUpSteps max catch up steps} at once.
+     * Renderers can use the {@link #getInterpolationAlpha() interpolation alpha} to draw between the last two updates.
+     * Takes effect when the loop is started.
+     */
+    public void setFixedStep(boolean fixedStep) {
+        this.fixedStep = fixedStep;
+    }
+
+    public boolean isFixedStep() {
+        return fixedStep;
+    }
+
+    /**
+     * @param maxCatchUpSteps How many updates the fixed step loop runs at most before waiting again, at least 1
+     */
+    public void setMaxCatchUpSteps(int maxCatchUpSteps) {
+        if (maxCatchUpSteps < 1) throw new IllegalArgumentException("Max catch up steps must be at least 1, was " + maxCatchUpSteps);
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    public int getMaxCatchUpSteps() {
+        return maxCatchUpSteps;
+    }
+
+    /**
+     * @return How far the fixed step loop is between the last update and the next one, from 0 to 1. Always 0 without a fixed step.
+     */
+    public float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * @return The time between two updates in nanoseconds
+     */
+    public long getTickIntervalNanos() {
+        return 1000000000L / (updateRate == null ? 60 : updateRate.updateRate);
     }
 
     public void stop(Scene scene) {
+        stopLoop();
         super.stop(scene);
-        currentLoop.interrupt();
     }
 }
@@ -0,0 +1,15 @@
+package org.totodev.engine.ecs;
+
+/**
+ * How a system accesses a component. Used by the event scheduler to decide which systems can run at the same time.
+ */
+public enum AccessMode {
+    /**
+     * The system only reads the component. Any number of systems can read a component at the same time.
+     */
+    READ,
+    /**
+     * The system reads and writes the component. No other system can access the component while it runs.
+     */
+    WRITE
+}
@@ -0,0 +1,14 @@
+package org.totodev.engine.ecs;
+
+import java.lang.annotation.*;
+
+/**
+ * This annotation can be put on systems to declare access to components that are not stored in a {@link CachedComponent} field,
+ * for example components written by subscribers of an event the system invokes.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AccessesComponents {
+    Class<?>[] read() default {};
+    Class<?>[] write() default {};
+}
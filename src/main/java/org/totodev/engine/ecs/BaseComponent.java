@@ -0,0 +1,38 @@
+package org.totodev.engine.ecs;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Base class for components that report changes in presence to the scene they are added to.
+ * This is what keeps {@link Query queries} up to date without rescanning every entity. Queries over components that
+ * implement {@link Component} directly are rebuilt every time they are retrieved with {@link Scene#query(Class[])}.
+ */
+public abstract class BaseComponent implements Component {
+    private Scene scene;
+    private int typeId = -1;
+
+    final void attach(Scene scene, int typeId) {
+        this.scene = scene;
+        this.typeId = typeId;
+    }
+
+    final void detach() {
+        this.scene = null;
+        this.typeId = -1;
+    }
+
+    /**
+     * @return The scene this component is added to, or null, if it is not added to a scene
+     */
+    protected final @Nullable Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Must be called by subclasses every time the data for an entity changed in a way that could change the result of {@link #isPresentOn(int)}.
+     * @param entityId The entity that was changed
+     */
+    protected final void presenceChanged(int entityId) {
+        if (scene != null) scene.updatePresence(typeId, entityId, isPresentOn(entityId));
+    }
+}
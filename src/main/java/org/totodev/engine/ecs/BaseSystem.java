@@ -1,22 +1,37 @@
 package org.totodev.engine.ecs;
 
 import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.api.factory.Sets;
 import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.api.set.MutableSet;
 import org.eclipse.collections.api.tuple.*;
 import org.eclipse.collections.impl.tuple.Tuples;
-import org.jetbrains.annotations.MustBeInvokedByOverriders;
+import org.jetbrains.annotations.*;
 import org.totodev.engine.core.CoreEvents;
 import org.totodev.engine.util.logging.*;
 
 import java.lang.invoke.*;
-import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.*;
 import java.util.Arrays;
 import java.util.stream.Stream;
 
 public abstract class BaseSystem {
+    /**
+     * A method of a system annotated with {@link EventSubscriber}.
+     * @param event      The name of the event
+     * @param eventId    The {@link EventRegistry#getId(String) id} of the event, resolved once when the subscribers are read
+     * @param subscriber The method compiled to an {@link EventListener}, or a MethodHandle bound to the system, if it has no matching listener type
+     * @param priority   The priority from the annotation
+     * @param name       The name of the system and method, used by the {@link EventProfiler}
+     */
+    public record EventSubscription(String event, int eventId, Object subscriber, int priority, String name) {
+    }
+
     private Scene scene;
-    private MutableList<Pair<String, MethodHandle>> eventSubscribers;
+    private MutableList<EventSubscription> eventSubscribers;
     private MutableList<Triple<Boolean, Class<?>, MethodHandle>> cachedComponentSetters;
+    private ComponentAccess componentAccess;
+    private boolean componentAccessRead = false;
 
     protected final Scene getScene() {
         return scene;
@@ -40,12 +55,16 @@ public abstract class BaseSystem {
             }
         });
 
-        getEventSubscribers().forEach(p -> scene.events.subscribe(p.getOne(), p.getTwo()));
+        ComponentAccess access = getComponentAccess();
+        getEventSubscribers().forEach(s -> {
+            scene.events.addSubscriber(s.eventId(), s.subscriber(), access, s.priority());
+            scene.events.setSubscriberName(s.subscriber(), s.name());
+        });
     }
 
     @MustBeInvokedByOverriders
     public void stop(Scene scene) {
-        getEventSubscribers().forEach(p -> scene.events.unsubscribe(p.getOne(), p.getTwo()));
+        getEventSubscribers().forEach(s -> scene.events.removeSubscriber(s.eventId(), s.subscriber()));
 
         getCachedComponentSetters().forEach(t -> {
             try {
@@ -60,7 +79,7 @@ public abstract class BaseSystem {
         this.scene = null;
     }
 
-    public final MutableList<Pair<String, MethodHandle>> getEventSubscribers() {
+    public final MutableList<EventSubscription> getEventSubscribers() {
         if (eventSubscribers != null) return eventSubscribers;
 
         eventSubscribers = Lists.mutable.empty();
@@ -70,9 +89,13 @@ public abstract class BaseSystem {
                 .forEach(m -> {
                     m.setAccessible(true);
                     try {
-                        eventSubscribers.add(Tuples.pair(
-                                m.getAnnotation(EventSubscriber.class).value(),
-                                MethodHandles.lookup().unreflect(m).bindTo(this)
+                        EventSubscriber annotation = m.getAnnotation(EventSubscriber.class);
+                        eventSubscribers.add(new EventSubscription(
+                                annotation.value(),
+                                EventRegistry.getId(annotation.value()),
+                                compileSubscriber(m),
+                                annotation.priority(),
+                                getClass().getSimpleName() + "." + m.getName()
                         ));
                     } catch (IllegalAccessException e) {
                         Logger.log(LogLevel.ERROR, "System", "Could not access method " + m.getName() + " when reading event subscribers.");
@@ -82,6 +105,44 @@ public abstract class BaseSystem {
         return eventSubscribers;
     }
 
+    /**
+     * Compiles a subscriber method to the {@link EventListener} matching its parameters with {@link LambdaMetafactory},
+     * so events call it directly instead of through {@link MethodHandle#invokeWithArguments}.
+     * @return The listener bound to this system, or a bound MethodHandle, if no listener type matches the parameters
+     */
+    private Object compileSubscriber(Method m) throws IllegalAccessException {
+        MethodHandle handle = MethodHandles.lookup().unreflect(m);
+
+        Class<?>[] parameters = m.getParameterTypes();
+        Class<?> listenerType = null;
+        // The parameters of the interface method, which only differ from the parameters of the method for single object parameters
+        MethodType erased = MethodType.methodType(void.class, parameters);
+        if (parameters.length == 0) listenerType = EventListener.OfNone.class;
+        else if (parameters.length == 1 && parameters[0] == float.class) listenerType = EventListener.OfFloat.class;
+        else if (parameters.length == 1 && parameters[0] == int.class) listenerType = EventListener.OfInt.class;
+        else if (parameters.length == 1 && !parameters[0].isPrimitive()) {
+            listenerType = EventListener.OfObject.class;
+            erased = MethodType.methodType(void.class, Object.class);
+        } else if (parameters.length == 2 && parameters[0] == int[].class && parameters[1] == int.class) listenerType = EventListener.OfIntBatch.class;
+        else if (parameters.length == 2 && parameters[0] == Object[].class && parameters[1] == int.class) listenerType = EventListener.OfObjectBatch.class;
+        if (listenerType == null || Modifier.isStatic(m.getModifiers())) return handle.bindTo(this);
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(m.getDeclaringClass(), MethodHandles.lookup());
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "invoke",
+                    MethodType.methodType(listenerType, m.getDeclaringClass()),
+                    erased,
+                    lookup.unreflect(m),
+                    MethodType.methodType(void.class, parameters));
+            return site.getTarget().invoke(this);
+        } catch (Throwable e) {
+            Logger.log(LogLevel.DEBUG, "System", "Could not compile event subscriber " + m.getName() + ", falling back to a MethodHandle [" + e + "]");
+            return handle.bindTo(this);
+        }
+    }
+
     public final MutableList<Triple<Boolean, Class<?>, MethodHandle>> getCachedComponentSetters() {
         if (cachedComponentSetters != null) return cachedComponentSetters;
 
@@ -109,6 +170,34 @@ public abstract class BaseSystem {
         return cachedComponentSetters;
     }
 
+    /**
+     * Collects the components this system accesses from its {@link CachedComponent} fields and its {@link AccessesComponents} annotation.
+     * @return The components this system accesses, or null, if it declares none and could therefore access anything
+     */
+    public final @Nullable ComponentAccess getComponentAccess() {
+        if (componentAccessRead) return componentAccess;
+        componentAccessRead = true;
+
+        MutableSet<Class<?>> reads = Sets.mutable.empty();
+        MutableSet<Class<?>> writes = Sets.mutable.empty();
+
+        Arrays.stream(this.getClass().getDeclaredFields())
+                .filter(f -> f.isAnnotationPresent(CachedComponent.class))
+                .forEach(f -> {
+                    if (f.getAnnotation(CachedComponent.class).value() == AccessMode.READ) reads.add(f.getType());
+                    else writes.add(f.getType());
+                });
+
+        AccessesComponents additional = this.getClass().getAnnotation(AccessesComponents.class);
+        if (additional != null) {
+            reads.addAll(Arrays.asList(additional.read()));
+            writes.addAll(Arrays.asList(additional.write()));
+        }
+
+        if (reads.notEmpty() || writes.notEmpty()) componentAccess = new ComponentAccess(reads, writes);
+        return componentAccess;
+    }
+
     @EventSubscriber(CoreEvents.COMPONENT_ADDED)
     public void componentAdded(Component component) {
         Class<? extends Component> componentType = component.getClass();
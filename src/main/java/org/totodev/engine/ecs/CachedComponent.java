@@ -5,8 +5,11 @@ import java.lang.annotation.*;
 /**
  * ONLY USE THIS ON IComponent OR IGlobalComponent <br/>
  * This annotation can be put on fields in systems to automatically fill them with the fitting component from the scene.
+ * The access mode is used to schedule the system in {@link EventManager#setParallel(String, boolean) parallel events}
+ * and should be set to {@link AccessMode#READ} if the system never writes the component.
  */
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface CachedComponent {
+    AccessMode value() default AccessMode.WRITE;
 }
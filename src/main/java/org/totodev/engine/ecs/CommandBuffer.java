@@ -0,0 +1,168 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Records structural changes to a scene so they can be applied later, when no system is iterating over the scene.
+ * Every thread gets its own buffer from {@link Scene#getCommandBuffer()}, so recording needs no synchronization.
+ * All buffers of a scene are played back in a batch by {@link Scene#playbackCommands()}. <br/>
+ * Entities created in a buffer get a negative placeholder id, which can be used in later commands of the same buffer
+ * and is replaced with the real id during playback.
+ */
+public final class CommandBuffer {
+    /**
+     * A change to a single entity, applied during playback.
+     */
+    @FunctionalInterface
+    public interface EntityCommand {
+        /**
+         * @param scene    The scene the buffer is played back in
+         * @param entityId The real id of the entity, with placeholders already resolved
+         */
+        void apply(Scene scene, int entityId);
+    }
+
+    private static final byte OP_CREATE = 0;
+    private static final byte OP_DESTROY = 1;
+    private static final byte OP_RUN = 2;
+    // Resolved id of a placeholder whose entity was destroyed again
+    private static final int DESTROYED = -1;
+
+    private byte[] ops = new byte[16];
+    private int[] targets = new int[16];
+    private EntityCommand[] commands = new EntityCommand[16];
+    private int size = 0;
+    // Number of commands that were recorded before the current playback started
+    private int recordedBeforePlayback = 0;
+
+    private int placeholderCount = 0;
+    // Real id of every placeholder, indexed by -placeholder - 1
+    private int[] resolved = new int[16];
+
+    CommandBuffer() {
+    }
+
+    //region Recording
+    /**
+     * Records the creation of an entity.
+     * @return The placeholder id of the new entity, valid only in this buffer until it is played back
+     */
+    public int createEntity() {
+        int placeholder = -(++placeholderCount);
+        push(OP_CREATE, placeholder, null);
+        return placeholder;
+    }
+
+    /**
+     * Records the destruction of an entity.
+     * @param entityId The id or placeholder id of the entity to destroy
+     */
+    public void destroyEntity(int entityId) {
+        push(OP_DESTROY, entityId, null);
+    }
+
+    /**
+     * Records a change to an entity, for example setting or resetting its component data.
+     * The command is skipped if the entity no longer exists during playback, even if a newly created entity reuses its id by then.
+     * @param entityId The id or placeholder id of the entity to change
+     * @param command  The change to apply
+     */
+    public void run(int entityId, @NotNull EntityCommand command) {
+        push(OP_RUN, entityId, command);
+    }
+
+    private void push(byte op, int target, EntityCommand command) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, size * 2);
+            targets = Arrays.copyOf(targets, size * 2);
+            commands = Arrays.copyOf(commands, size * 2);
+        }
+        ops[size] = op;
+        targets[size] = target;
+        commands[size] = command;
+        size++;
+    }
+    //endregion
+
+    /**
+     * @return The number of recorded commands
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Marks the commands recorded so far as older than any entity created in the following playback.
+     */
+    void beginPlayback() {
+        recordedBeforePlayback = size;
+    }
+
+    /**
+     * Applies all recorded commands in the order they were recorded and clears this buffer.
+     * Consecutive creations and destructions are applied as one batch each.
+     * @param destroyed The entities destroyed so far in the playback of all buffers, which is extended by this buffer
+     */
+    void playback(Scene scene, MutableIntSet destroyed) {
+        // Commands recorded on this thread during playback are appended and applied in the same pass
+        for (int i = 0; i < size; i++) {
+            int end = i + 1;
+            while (end < size && ops[end] == ops[i] && ops[i] != OP_RUN) end++;
+
+            switch (ops[i]) {
+                case OP_CREATE -> {
+                    int[] created = scene.createEntities(end - i);
+                    for (int j = i; j < end; j++) {
+                        int slot = -targets[j] - 1;
+                        if (slot >= resolved.length) resolved = Arrays.copyOf(resolved, Math.max(resolved.length * 2, slot + 1));
+                        resolved[slot] = created[j - i];
+                    }
+                }
+                case OP_DESTROY -> {
+                    MutableIntList entityIds = IntLists.mutable.empty();
+                    for (int j = i; j < end; j++) {
+                        int entityId = resolve(targets[j]);
+                        if (entityId == DESTROYED) continue;
+                        entityIds.add(entityId);
+                        if (targets[j] < 0) resolved[-targets[j] - 1] = DESTROYED;
+                        else destroyed.add(entityId);
+                    }
+                    scene.destroyEntities(entityIds);
+                }
+                default -> {
+                    // A real id recorded before the playback that was destroyed in it can only belong to a new entity reusing the id
+                    int target = targets[i];
+                    int entityId = resolve(target);
+                    if (entityId == DESTROYED || i < recordedBeforePlayback && destroyed.contains(target)) continue;
+                    if (scene.isAlive(entityId)) commands[i].apply(scene, entityId);
+                }
+            }
+            i = end - 1;
+        }
+
+        clear();
+    }
+
+    private int resolve(int target) {
+        return target < 0 ? resolved[-target - 1] : target;
+    }
+
+    /**
+     * Discards all recorded commands.
+     */
+    public void clear() {
+        Arrays.fill(commands, 0, size, null);
+        size = 0;
+        recordedBeforePlayback = 0;
+        placeholderCount = 0;
+    }
+}
@@ -13,6 +13,15 @@ public interface Component {
      */
     void resetEntity(int entityId);
 
+    /**
+     * Resets the data for multiple entities. Components that can reset many entities at once more efficiently should override this.
+     * @param entityIds The entity ids to reset the data for
+     */
+    default void resetEntities(@NotNull int[] entityIds) {
+        for (int entityId : entityIds)
+            resetEntity(entityId);
+    }
+
     /**
      * Sets the component state for one entity.
      * @param data The entity id with the serialized state
@@ -0,0 +1,38 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.factory.Sets;
+import org.eclipse.collections.api.set.*;
+
+/**
+ * The set of components and global components a system reads and writes.
+ * Two systems conflict if one of them writes a component the other one accesses.
+ */
+public final class ComponentAccess {
+    private final ImmutableSet<Class<?>> reads;
+    private final ImmutableSet<Class<?>> writes;
+
+    public ComponentAccess(SetIterable<Class<?>> reads, SetIterable<Class<?>> writes) {
+        this.writes = Sets.immutable.withAll(writes);
+        this.reads = Sets.immutable.withAll(reads).difference(this.writes);
+    }
+
+    public ImmutableSet<Class<?>> getReads() {
+        return reads;
+    }
+
+    public ImmutableSet<Class<?>> getWrites() {
+        return writes;
+    }
+
+    /**
+     * @param other The access of another system
+     * @return Whether the two systems could access the same component while at least one of them writes it
+     */
+    public boolean conflictsWith(ComponentAccess other) {
+        for (Class<?> type : writes)
+            if (other.writes.contains(type) || other.reads.contains(type)) return true;
+        for (Class<?> type : other.writes)
+            if (reads.contains(type)) return true;
+        return false;
+    }
+}
@@ -0,0 +1,470 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.block.procedure.primitive.IntProcedure;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative entity ids, split into chunks of 65536 ids like a Roaring bitmap.
+ * Sparse chunks store their ids as a sorted array and dense chunks as a plain bitset, so both few and many entities take little memory. <br/>
+ * {@link #and(EntityBitmap)}, {@link #or(EntityBitmap)} and {@link #andNot(EntityBitmap)} work on whole chunks at once,
+ * combining two dense chunks 64 ids per instruction, and return a new bitmap without changing the inputs.
+ */
+public final class EntityBitmap {
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+    private int containerCount = 0;
+
+    //region Single entities
+    /**
+     * @param entityId The entity to add
+     * @return Whether the entity was not already in this bitmap
+     */
+    public boolean add(int entityId) {
+        char key = (char) (entityId >>> 16);
+        int index = indexOfKey(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+
+        Container container = containers[index];
+        int cardinality = container.cardinality();
+        containers[index] = container.add((char) entityId);
+        return containers[index].cardinality() != cardinality;
+    }
+
+    /**
+     * @param entityId The entity to remove
+     * @return Whether the entity was in this bitmap
+     */
+    public boolean remove(int entityId) {
+        int index = indexOfKey((char) (entityId >>> 16));
+        if (index < 0) return false;
+
+        int cardinality = containers[index].cardinality();
+        Container container = containers[index].remove((char) entityId);
+        if (container.cardinality() == 0) removeContainer(index);
+        else containers[index] = container;
+        return container.cardinality() != cardinality;
+    }
+
+    public boolean contains(int entityId) {
+        int index = indexOfKey((char) (entityId >>> 16));
+        return index >= 0 && containers[index].contains((char) entityId);
+    }
+    //endregion
+
+    //region Whole bitmap
+    /**
+     * @return The number of entities in this bitmap
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < containerCount; i++)
+            size += containers[i].cardinality();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return containerCount == 0;
+    }
+
+    public void clear() {
+        keys = new char[0];
+        containers = new Container[0];
+        containerCount = 0;
+    }
+
+    /**
+     * Calls the procedure for every entity in ascending order.
+     */
+    public void forEach(IntProcedure procedure) {
+        for (int i = 0; i < containerCount; i++)
+            containers[i].forEach(keys[i] << 16, procedure);
+    }
+
+    /**
+     * @return All entities in ascending order
+     */
+    public int[] toArray() {
+        int[] result = new int[size()];
+        int offset = 0;
+        for (int i = 0; i < containerCount; i++)
+            offset = containers[i].fill(keys[i] << 16, result, offset);
+        return result;
+    }
+
+    public EntityBitmap copy() {
+        EntityBitmap copy = new EntityBitmap();
+        copy.keys = Arrays.copyOf(keys, containerCount);
+        copy.containers = new Container[containerCount];
+        for (int i = 0; i < containerCount; i++)
+            copy.containers[i] = containers[i].copy();
+        copy.containerCount = containerCount;
+        return copy;
+    }
+    //endregion
+
+    //region Set algebra
+    /**
+     * @return A new bitmap with all entities that are in both bitmaps
+     */
+    public EntityBitmap and(EntityBitmap other) {
+        EntityBitmap result = new EntityBitmap();
+        int i = 0, j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else {
+                result.appendIfNotEmpty(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return A new bitmap with all entities that are in at least one of the bitmaps
+     */
+    public EntityBitmap or(EntityBitmap other) {
+        EntityBitmap result = new EntityBitmap();
+        int i = 0, j = 0;
+        while (i < containerCount || j < other.containerCount) {
+            if (j == other.containerCount || (i < containerCount && keys[i] < other.keys[j])) {
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+                i++;
+            } else if (i == containerCount || keys[i] > other.keys[j]) {
+                result.appendIfNotEmpty(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return A new bitmap with all entities of this bitmap that are not in the other one
+     */
+    public EntityBitmap andNot(EntityBitmap other) {
+        EntityBitmap result = new EntityBitmap();
+        int j = 0;
+        for (int i = 0; i < containerCount; i++) {
+            while (j < other.containerCount && other.keys[j] < keys[i]) j++;
+            if (j < other.containerCount && other.keys[j] == keys[i])
+                result.appendIfNotEmpty(keys[i], containers[i].andNot(other.containers[j]));
+            else
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+    //endregion
+
+    //region Container management
+    private int indexOfKey(char key) {
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            int capacity = Math.max(4, containerCount * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containers[--containerCount] = null;
+    }
+
+    private void appendIfNotEmpty(char key, Container container) {
+        if (container.cardinality() > 0) insertContainer(containerCount, key, container);
+    }
+    //endregion
+
+    //region Containers
+    /**
+     * The ids of one chunk of 65536 entities, stored as their lower 16 bits.
+     * Operations that change the type of storage return a new container, so callers always have to use the returned one.
+     */
+    private static abstract class Container {
+        // Chunks with more ids than this take less memory as a bitset
+        static final int MAX_ARRAY_SIZE = 4096;
+
+        abstract int cardinality();
+        abstract boolean contains(char value);
+        abstract Container add(char value);
+        abstract Container remove(char value);
+
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int high, IntProcedure procedure);
+        abstract int fill(int high, int[] target, int offset);
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) return this;
+            if (size == MAX_ARRAY_SIZE) return toBitmap().add(value);
+
+            index = -index - 1;
+            if (size == values.length) values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, Math.max(4, size * 2)));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) return this;
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0, j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) i++;
+                    else if (values[i] > array.values[j]) j++;
+                    else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++)
+                    if (other.contains(values[i])) result[count++] = values[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[size + array.size];
+            int count = 0, i = 0, j = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || (i < size && values[i] < array.values[j])) result[count++] = values[i++];
+                else if (i == size || values[i] > array.values[j]) result[count++] = array.values[j++];
+                else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+
+            ArrayContainer merged = new ArrayContainer(result, count);
+            return count > MAX_ARRAY_SIZE ? merged.toBitmap() : merged;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i++)
+                if (!other.contains(values[i])) result[count++] = values[i];
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void forEach(int high, IntProcedure procedure) {
+            for (int i = 0; i < size; i++)
+                procedure.value(high | values[i]);
+        }
+
+        @Override
+        int fill(int high, int[] target, int offset) {
+            for (int i = 0; i < size; i++)
+                target[offset++] = high | values[i];
+            return offset;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 4)), size);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[1024], size);
+            for (int i = 0; i < size; i++)
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words)
+                cardinality += Long.bitCount(word);
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality > MAX_ARRAY_SIZE ? bitmap : bitmap.toArray();
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long word = words[value >>> 6];
+            long newWord = word | (1L << value);
+            if (word != newWord) {
+                words[value >>> 6] = newWord;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long word = words[value >>> 6];
+            long newWord = word & ~(1L << value);
+            if (word == newWord) return this;
+            words[value >>> 6] = newWord;
+            cardinality--;
+            return cardinality > MAX_ARRAY_SIZE ? this : toArray();
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            for (int i = 0; i < 1024; i++)
+                result[i] = words[i] & otherWords[i];
+            return of(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.size; i++)
+                    result[array.values[i] >>> 6] |= 1L << array.values[i];
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < 1024; i++)
+                    result[i] |= otherWords[i];
+            }
+            return of(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.size; i++)
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < 1024; i++)
+                    result[i] &= ~otherWords[i];
+            }
+            return of(result);
+        }
+
+        @Override
+        void forEach(int high, IntProcedure procedure) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    procedure.value(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int fill(int high, int[] target, int offset) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    target[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,47 @@
+package org.totodev.engine.ecs;
+
+/**
+ * A compiled event subscriber. Invoking a listener is a plain interface call, which the JIT can inline,
+ * while subscribers given as {@link java.lang.invoke.MethodHandle MethodHandles} are called with boxed arguments. <br/>
+ * Systems compile their {@link EventSubscriber event subscribers} to listeners automatically.
+ * The primitive listeners are called without boxing by the matching {@link EventManager#invokeEvent(String, float) invokeEvent} overloads.
+ */
+public interface EventListener {
+    @FunctionalInterface
+    interface OfNone extends EventListener {
+        void invoke();
+    }
+
+    @FunctionalInterface
+    interface OfFloat extends EventListener {
+        void invoke(float value);
+    }
+
+    @FunctionalInterface
+    interface OfInt extends EventListener {
+        void invoke(int value);
+    }
+
+    @FunctionalInterface
+    interface OfObject extends EventListener {
+        void invoke(Object value);
+    }
+
+    /**
+     * Receives all arguments of a {@link EventQueue.OfInt queued event} in one call.
+     * The array is reused and only valid during the call, only the first count values belong to the batch.
+     */
+    @FunctionalInterface
+    interface OfIntBatch extends EventListener {
+        void invoke(int[] values, int count);
+    }
+
+    /**
+     * Receives all arguments of a {@link EventQueue.OfObject queued event} in one call.
+     * The array is reused and only valid during the call, only the first count values belong to the batch.
+     */
+    @FunctionalInterface
+    interface OfObjectBatch extends EventListener {
+        void invoke(Object[] values, int count);
+    }
+}
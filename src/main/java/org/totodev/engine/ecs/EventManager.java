@@ -1,46 +1,574 @@
 package org.totodev.engine.ecs;
 
-import org.eclipse.collections.api.factory.Sets;
+import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.api.map.MutableMap;
-import org.eclipse.collections.api.set.MutableSet;
 import org.eclipse.collections.impl.factory.Maps;
+import org.eclipse.collections.impl.factory.primitive.*;
+import org.jetbrains.annotations.*;
 import org.totodev.engine.util.logging.*;
 
 import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 public class EventManager {
-    private final MutableMap<String, MutableSet<MethodHandle>> events = Maps.mutable.empty();
+    /**
+     * The subscribers of one event. The subscriber array is never modified, but replaced on every change,
+     * so invoking an event does not need a lock and is not affected by subscribers added during the invocation.
+     */
+    private static final class Event {
+        private final String name;
+        // Subscribers are either MethodHandles or EventListeners, sorted by priority and then by the order they subscribed in
+        private volatile Object[] subscribers = new Object[0];
+        // The priority of every subscriber, indexed like subscribers and only accessed while holding the lock of the manager
+        private int[] priorities = new int[0];
+        private volatile boolean parallel = false;
+        private volatile Schedule schedule;
+        // Set if the event is queued, see setQueued
+        private volatile EventQueue queue;
+        // Queued events that are flushed whenever this event was invoked
+        private volatile Event[] flushedAfter = NO_EVENTS;
+
+        private Event(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final Event[] NO_EVENTS = new Event[0];
+
+    // Indexed by the ids of the EventRegistry, grown on demand and replaced instead of modified
+    private volatile Event[] events = new Event[0];
+
+    //region Profiling
+    private final Map<Object, String> subscriberNames = new ConcurrentHashMap<>();
+    private volatile EventProfiler profiler;
+    //endregion
+
+    //region Parallel events
+    /**
+     * The subscribers of a parallel event in a fixed order, with the indices of all earlier subscribers each one has to wait for.
+     */
+    private record Schedule(Object[] subscribers, int[][] dependencies) {
+    }
+
+    private final MutableMap<Object, ComponentAccess> accesses = Maps.mutable.empty();
+    private ForkJoinPool executor = ForkJoinPool.commonPool();
+    //endregion
+
+    private @Nullable Event getEvent(int id) {
+        Event[] events = this.events;
+        return id < events.length ? events[id] : null;
+    }
+
+    private synchronized Event getOrCreateEvent(int id) {
+        Event[] current = events;
+        if (id < current.length && current[id] != null) return current[id];
+
+        Event[] grown = id < current.length ? current.clone() : Arrays.copyOf(current, Math.max(id + 1, EventRegistry.getCount()));
+        Event event = new Event(EventRegistry.getName(id));
+        grown[id] = event;
+        events = grown;
+        return event;
+    }
+
+    //region Invocation
+    /**
+     * Invokes an event without arguments.
+     * @param name The name of the event to invoke
+     */
+    public void invokeEvent(String name) {
+        invokeEvent(EventRegistry.getId(name));
+    }
+
+    /**
+     * Invokes an event with a float argument, for example the delta time of the update events. {@link EventListener.OfFloat} subscribers are called without boxing.
+     * @param name  The name of the event to invoke
+     * @param value The argument to pass to the event
+     */
+    public void invokeEvent(String name, float value) {
+        invokeEvent(EventRegistry.getId(name), value);
+    }
+
+    /**
+     * Invokes an event with an int argument, for example an entity id. {@link EventListener.OfInt} subscribers are called without boxing.
+     * @param name  The name of the event to invoke
+     * @param value The argument to pass to the event
+     */
+    public void invokeEvent(String name, int value) {
+        invokeEvent(EventRegistry.getId(name), value);
+    }
+
+    /**
+     * Invokes an event with a single object argument.
+     * @param name  The name of the event to invoke
+     * @param value The argument to pass to the event
+     */
+    public void invokeEvent(String name, Object value) {
+        invokeEvent(EventRegistry.getId(name), value);
+    }
+
+    //region Other primitives
+    // Passed boxed as their own type, so they are not widened to the float or int overload before the subscribers see them
+    public void invokeEvent(String name, long value) {
+        invokeEvent(EventRegistry.getId(name), (Object) value);
+    }
+    public void invokeEvent(String name, double value) {
+        invokeEvent(EventRegistry.getId(name), (Object) value);
+    }
+    public void invokeEvent(String name, short value) {
+        invokeEvent(EventRegistry.getId(name), (Object) value);
+    }
+    public void invokeEvent(String name, byte value) {
+        invokeEvent(EventRegistry.getId(name), (Object) value);
+    }
+    public void invokeEvent(String name, char value) {
+        invokeEvent(EventRegistry.getId(name), (Object) value);
+    }
+    public void invokeEvent(int id, long value) {
+        invokeEvent(id, (Object) value);
+    }
+    public void invokeEvent(int id, double value) {
+        invokeEvent(id, (Object) value);
+    }
+    public void invokeEvent(int id, short value) {
+        invokeEvent(id, (Object) value);
+    }
+    public void invokeEvent(int id, byte value) {
+        invokeEvent(id, (Object) value);
+    }
+    public void invokeEvent(int id, char value) {
+        invokeEvent(id, (Object) value);
+    }
+    //endregion
 
     /**
      * @param name The name of the event to invoke
      * @param args The arguments to pass to the event.
      */
     public void invokeEvent(String name, Object... args) {
-        MutableSet<MethodHandle> subscribers = events.get(name);
-        if (subscribers != null) {
-            if (args.length == 0) {
-                for (MethodHandle method : subscribers) {
-                    try {
-                        method.invoke();
-                    } catch (WrongMethodTypeException e) {
-                        Logger.log(LogLevel.ERROR, "SceneEvents", "Wrong arguments supplied to event " + name + " [" + e + "]");
-                    } catch (Throwable e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+        invokeEvent(EventRegistry.getId(name), args);
+    }
+
+    /**
+     * Invokes an event without arguments.
+     * @param id The {@link EventRegistry#getId(String) id} of the event to invoke
+     */
+    public void invokeEvent(int id) {
+        Event event = getEvent(id);
+        if (event == null) return;
+        Object[] subscribers = event.subscribers;
+        if (isDirect(event, subscribers)) {
+            for (Object subscriber : subscribers) {
+                if (subscriber instanceof EventListener.OfNone listener) listener.invoke();
+                else invokeSubscriber(event.name, subscriber, NO_ARGS);
+            }
+        } else {
+            dispatch(event, subscribers, subscriber -> invokeSubscriber(event.name, subscriber, NO_ARGS));
+        }
+        flushAfter(event);
+    }
+
+    /**
+     * @param id    The {@link EventRegistry#getId(String) id} of the event to invoke
+     * @param value The argument to pass to the event
+     * @see #invokeEvent(String, float)
+     */
+    public void invokeEvent(int id, float value) {
+        Event event = getEvent(id);
+        if (event == null) return;
+        if (event.queue instanceof EventQueue.OfObject objects && objects.offer(value)) return;
+        Object[] subscribers = event.subscribers;
+        if (isDirect(event, subscribers)) {
+            for (Object subscriber : subscribers)
+                invokeFloat(event.name, subscriber, value);
+        } else {
+            dispatch(event, subscribers, subscriber -> invokeFloat(event.name, subscriber, value));
+        }
+        flushAfter(event);
+    }
+
+    /**
+     * @param id    The {@link EventRegistry#getId(String) id} of the event to invoke
+     * @param value The argument to pass to the event
+     * @see #invokeEvent(String, int)
+     */
+    public void invokeEvent(int id, int value) {
+        Event event = getEvent(id);
+        if (event == null) return;
+        EventQueue queue = event.queue;
+        if (queue instanceof EventQueue.OfInt ints && ints.offer(value)) return;
+        if (queue instanceof EventQueue.OfObject objects && objects.offer(value)) return;
+        Object[] subscribers = event.subscribers;
+        if (isDirect(event, subscribers)) {
+            for (Object subscriber : subscribers)
+                invokeInt(event.name, subscriber, value);
+        } else {
+            dispatch(event, subscribers, subscriber -> invokeInt(event.name, subscriber, value));
+        }
+        flushAfter(event);
+    }
+
+    /**
+     * @param id    The {@link EventRegistry#getId(String) id} of the event to invoke
+     * @param value The argument to pass to the event
+     */
+    public void invokeEvent(int id, Object value) {
+        Event event = getEvent(id);
+        if (event == null) return;
+        EventQueue queue = event.queue;
+        if (queue instanceof EventQueue.OfObject objects && objects.offer(value)) return;
+        if (queue instanceof EventQueue.OfInt ints && value instanceof Integer i && ints.offer(i)) return;
+        Object[] subscribers = event.subscribers;
+        if (isDirect(event, subscribers)) {
+            for (Object subscriber : subscribers)
+                invokeObject(event.name, subscriber, value);
+        } else {
+            dispatch(event, subscribers, subscriber -> invokeObject(event.name, subscriber, value));
+        }
+        flushAfter(event);
+    }
+
+    /**
+     * @param id   The {@link EventRegistry#getId(String) id} of the event to invoke
+     * @param args The arguments to pass to the event.
+     */
+    public void invokeEvent(int id, Object... args) {
+        Event event = getEvent(id);
+        if (event == null) return;
+        dispatch(event, event.subscribers, subscriber -> invokeSubscriber(event.name, subscriber, args));
+        flushAfter(event);
+    }
+
+    /**
+     * @return Whether the subscribers can be called in a plain loop on the current thread, without profiling
+     */
+    private boolean isDirect(Event event, Object[] subscribers) {
+        return profiler == null && (subscribers.length < 2 || !event.parallel);
+    }
+
+    private void dispatch(Event event, Object[] subscribers, Consumer<Object> call) {
+        if (subscribers.length == 0) return;
+        EventProfiler profiler = this.profiler;
+        long start = 0, allocated = 0;
+        if (profiler != null) {
+            allocated = profiler.allocatedBytes();
+            start = System.nanoTime();
+        }
+
+        if (subscribers.length > 1 && event.parallel) {
+            invokeParallel(event.name, getSchedule(event, subscribers), call);
+        } else {
+            for (Object subscriber : subscribers)
+                invokeProfiled(event.name, subscriber, call);
+        }
+
+        if (profiler != null) profiler.record(event.name, null, System.nanoTime() - start, profiler.allocatedBytes() - allocated);
+    }
+
+    private void invokeProfiled(String name, Object subscriber, Consumer<Object> call) {
+        EventProfiler profiler = this.profiler;
+        if (profiler == null) {
+            call.accept(subscriber);
+            return;
+        }
+
+        long allocated = profiler.allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            call.accept(subscriber);
+        } finally {
+            profiler.record(name, subscriber, System.nanoTime() - start, profiler.allocatedBytes() - allocated);
+        }
+    }
+
+    private void invokeFloat(String name, Object subscriber, float value) {
+        if (subscriber instanceof EventListener.OfFloat listener) listener.invoke(value);
+        else invokeSubscriber(name, subscriber, new Object[]{value});
+    }
+
+    private void invokeInt(String name, Object subscriber, int value) {
+        if (subscriber instanceof EventListener.OfInt listener) listener.invoke(value);
+        else if (subscriber instanceof EventListener.OfIntBatch listener) listener.invoke(new int[]{value}, 1);
+        else invokeSubscriber(name, subscriber, new Object[]{value});
+    }
+
+    private void invokeObject(String name, Object subscriber, Object value) {
+        if (subscriber instanceof EventListener.OfObject listener) listener.invoke(value);
+        else if (subscriber instanceof EventListener.OfObjectBatch listener) listener.invoke(new Object[]{value}, 1);
+        else invokeSubscriber(name, subscriber, new Object[]{value});
+    }
+
+    /**
+     * Calls a subscriber with boxed arguments. Used for MethodHandles and for listeners invoked with arguments that do not match their type exactly.
+     */
+    private void invokeSubscriber(String name, Object subscriber, Object[] args) {
+        if (subscriber instanceof MethodHandle method) {
+            try {
+                if (args.length == 0) method.invoke();
+                else method.invokeWithArguments(args);
+            } catch (WrongMethodTypeException e) {
+                Logger.log(LogLevel.ERROR, "SceneEvents", "Wrong arguments supplied to event " + name + " [" + e + "]");
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        // Boxed numbers are unboxed and widened like a MethodHandle would convert them
+        if (args.length == 0 && subscriber instanceof EventListener.OfNone listener) listener.invoke();
+        else if (args.length == 1 && subscriber instanceof EventListener.OfFloat listener && widensToFloat(args[0])) listener.invoke(toFloat(args[0]));
+        else if (args.length == 1 && subscriber instanceof EventListener.OfInt listener && widensToInt(args[0])) listener.invoke(toInt(args[0]));
+        else if (args.length == 1 && subscriber instanceof EventListener.OfObject listener) listener.invoke(args[0]);
+        else if (args.length == 1 && subscriber instanceof EventListener.OfIntBatch listener && widensToInt(args[0])) listener.invoke(new int[]{toInt(args[0])}, 1);
+        else if (args.length == 1 && subscriber instanceof EventListener.OfObjectBatch listener) listener.invoke(args, 1);
+        else Logger.log(LogLevel.ERROR, "SceneEvents", "Wrong arguments supplied to event " + name + " [" + args.length + " arguments for " + subscriberNames.getOrDefault(subscriber, subscriber.toString()) + "]");
+    }
+
+    private static boolean widensToInt(Object arg) {
+        return arg instanceof Integer || arg instanceof Short || arg instanceof Byte || arg instanceof Character;
+    }
+
+    private static boolean widensToFloat(Object arg) {
+        return arg instanceof Float || arg instanceof Long || widensToInt(arg);
+    }
+
+    private static int toInt(Object arg) {
+        return arg instanceof Character c ? c : ((Number) arg).intValue();
+    }
+
+    private static float toFloat(Object arg) {
+        return arg instanceof Character c ? c : ((Number) arg).floatValue();
+    }
+
+    private void invokeParallel(String name, Schedule schedule, Consumer<Object> call) {
+        Object[] subscribers = schedule.subscribers();
+        CompletableFuture<?>[] tasks = new CompletableFuture[subscribers.length];
+
+        for (int i = 0; i < subscribers.length; i++) {
+            Object subscriber = subscribers[i];
+            Runnable task = () -> invokeProfiled(name, subscriber, call);
+            int[] dependencies = schedule.dependencies()[i];
+
+            if (dependencies.length == 0) {
+                tasks[i] = CompletableFuture.runAsync(task, executor);
             } else {
-                for (MethodHandle method : subscribers) {
-                    try {
-                        method.invokeWithArguments(args);
-                    } catch (WrongMethodTypeException e) {
-                        Logger.log(LogLevel.ERROR, "SceneEvents", "Wrong arguments supplied to event " + name + " [" + e + "]");
-                    } catch (Throwable e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+                CompletableFuture<?>[] waitFor = new CompletableFuture[dependencies.length];
+                for (int j = 0; j < dependencies.length; j++)
+                    waitFor[j] = tasks[dependencies[j]];
+                tasks[i] = CompletableFuture.allOf(waitFor).thenRunAsync(task, executor);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+    //endregion
+
+    //region Queued events
+    /**
+     * Queues an event instead of delivering it on the thread that invokes it. Invoking the event with a single argument only adds it to the queue,
+     * which any number of threads can do at the same time without locking. All queued arguments are delivered as one batch
+     * when the queue is flushed: {@link EventListener.OfIntBatch} and {@link EventListener.OfObjectBatch} subscribers receive the whole batch in one call,
+     * all other subscribers are called once per argument. <br/>
+     * Events invoked without exactly one argument, and events invoked while the queue is full, are delivered immediately as before.
+     * Subscribers of the event must not flush it themselves.
+     * @param name       The name of the event
+     * @param queue      The queue to collect the arguments in, or null, to deliver the event immediately again. Arguments still in the old queue are flushed.
+     * @param flushAfter The name of the event after which the queue is flushed, for example {@link org.totodev.engine.core.systems.Updater#EVENT_POST_UPDATE},
+     *                   or null, if it is only flushed by {@link #flushQueuedEvents()}
+     */
+    public void setQueued(String name, @Nullable EventQueue queue, @Nullable String flushAfter) {
+        Event event = getOrCreateEvent(EventRegistry.getId(name));
+        synchronized (this) {
+            for (Event other : events) {
+                if (other == null) continue;
+                Event[] flushed = other.flushedAfter;
+                int index = Arrays.asList(flushed).indexOf(event);
+                if (index < 0) continue;
+                Event[] updated = new Event[flushed.length - 1];
+                System.arraycopy(flushed, 0, updated, 0, index);
+                System.arraycopy(flushed, index + 1, updated, index, updated.length - index);
+                other.flushedAfter = updated;
+            }
+            if (queue != null && flushAfter != null) {
+                Event phase = getOrCreateEvent(EventRegistry.getId(flushAfter));
+                Event[] updated = Arrays.copyOf(phase.flushedAfter, phase.flushedAfter.length + 1);
+                updated[updated.length - 1] = event;
+                phase.flushedAfter = updated;
+            }
+        }
+
+        EventQueue old = event.queue;
+        event.queue = queue;
+        if (old != null) flush(event, old);
+    }
+
+    public @Nullable EventQueue getQueue(String name) {
+        Event event = getEvent(EventRegistry.getId(name));
+        return event == null ? null : event.queue;
+    }
+
+    /**
+     * Delivers the queued arguments of an event.
+     * @param name The name of the event
+     */
+    public void flush(String name) {
+        Event event = getEvent(EventRegistry.getId(name));
+        if (event == null) return;
+        EventQueue queue = event.queue;
+        if (queue != null) flush(event, queue);
+    }
+
+    /**
+     * Delivers the queued arguments of all queued events.
+     */
+    public void flushQueuedEvents() {
+        for (Event event : events) {
+            if (event == null) continue;
+            EventQueue queue = event.queue;
+            if (queue != null) flush(event, queue);
+        }
+    }
+
+    private void flushAfter(Event event) {
+        Event[] flushed = event.flushedAfter;
+        for (Event queued : flushed) {
+            EventQueue queue = queued.queue;
+            if (queue != null) flush(queued, queue);
+        }
+    }
+
+    private void flush(Event event, EventQueue queue) {
+        // Arguments queued while the batch is delivered stay in the queue for the next flush
+        synchronized (queue) {
+            int count = queue.drain();
+            if (count == 0) return;
+
+            if (queue instanceof EventQueue.OfInt ints) {
+                int[] batch = ints.getBatch();
+                dispatch(event, event.subscribers, subscriber -> {
+                    if (subscriber instanceof EventListener.OfIntBatch listener) listener.invoke(batch, count);
+                    else for (int i = 0; i < count; i++) invokeInt(event.name, subscriber, batch[i]);
+                });
+            } else if (queue instanceof EventQueue.OfObject objects) {
+                Object[] batch = objects.getBatch();
+                dispatch(event, event.subscribers, subscriber -> {
+                    if (subscriber instanceof EventListener.OfObjectBatch listener) listener.invoke(batch, count);
+                    else for (int i = 0; i < count; i++) invokeObject(event.name, subscriber, batch[i]);
+                });
+                objects.clearBatch(count);
             }
         }
     }
+    //endregion
+
+    /**
+     * Builds the dependency graph of a parallel event. Every subscriber waits for all earlier subscribers it conflicts with.
+     * Subscribers without declared access conflict with every other subscriber.
+     */
+    private synchronized Schedule getSchedule(Event event, Object[] ordered) {
+        Schedule schedule = event.schedule;
+        if (schedule != null && schedule.subscribers() == ordered) return schedule;
+
+        int[][] dependencies = new int[ordered.length][];
+        for (int i = 0; i < ordered.length; i++) {
+            ComponentAccess access = accesses.get(ordered[i]);
+            MutableIntList dependsOn = IntLists.mutable.empty();
+            for (int j = 0; j < i; j++) {
+                ComponentAccess otherAccess = accesses.get(ordered[j]);
+                if (access == null || otherAccess == null || access.conflictsWith(otherAccess)) dependsOn.add(j);
+            }
+            dependencies[i] = dependsOn.toArray();
+        }
+
+        schedule = new Schedule(ordered, dependencies);
+        event.schedule = schedule;
+        return schedule;
+    }
+
+    /**
+     * Marks an event as parallel. The subscribers of a parallel event are run on the {@link #setExecutor(ForkJoinPool) executor},
+     * and subscribers that do not access the same components run at the same time. Subscribers that conflict run in the order of their priority.
+     * {@link #invokeEvent(String, Object...) invokeEvent} still returns only after all subscribers are done. <br/>
+     * Subscribers of parallel events must not create or destroy entities, add or remove components, or change which entities a component is present on.
+     * These changes can be recorded in the {@link Scene#getCommandBuffer() command buffer} instead.
+     * @param name     The name of the event
+     * @param parallel Whether the event should be parallel
+     */
+    public void setParallel(String name, boolean parallel) {
+        getOrCreateEvent(EventRegistry.getId(name)).parallel = parallel;
+    }
+
+    /**
+     * @param id The {@link EventRegistry#getId(String) id} of the event
+     * @return Whether anything subscribed to the event, so callers can skip preparing arguments nobody receives
+     */
+    public boolean hasSubscribers(int id) {
+        Event event = getEvent(id);
+        return event != null && event.subscribers.length > 0;
+    }
+
+    public boolean isParallel(String name) {
+        Event event = getEvent(EventRegistry.getId(name));
+        return event != null && event.parallel;
+    }
+
+    /**
+     * Sets the pool parallel events are run on. Defaults to {@link ForkJoinPool#commonPool()}.
+     * @param executor The pool to run subscribers on
+     */
+    public void setExecutor(@NotNull ForkJoinPool executor) {
+        this.executor = executor;
+    }
+
+    public ForkJoinPool getExecutor() {
+        return executor;
+    }
+
+    //region Profiling
+    /**
+     * Starts measuring the time and allocations of all events and subscribers. Does nothing if profiling is already enabled.
+     * @return The profiler collecting the measurements
+     */
+    public EventProfiler enableProfiling() {
+        EventProfiler current = profiler;
+        if (current != null) return current;
+        current = new EventProfiler(subscriberNames);
+        profiler = current;
+        return current;
+    }
+
+    /**
+     * Stops measuring. The measurements collected so far stay available in the old profiler.
+     */
+    public void disableProfiling() {
+        EventProfiler current = profiler;
+        if (current != null) current.stopPeriodicDump();
+        profiler = null;
+    }
+
+    /**
+     * @return The profiler, or null, if profiling is disabled
+     */
+    public @Nullable EventProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Sets the name a subscriber is shown with in the {@link EventProfiler}. Systems name their subscribers after their class and method.
+     */
+    public void setSubscriberName(Object subscriber, String name) {
+        subscriberNames.put(subscriber, name);
+    }
+    //endregion
 
     /**
      * Subscribes a method to an event. When subscribing a non-static method,
@@ -49,14 +577,74 @@ public class EventManager {
      * @param method The method to subscribe
      */
     public void subscribe(String name, MethodHandle method) {
-        MutableSet<MethodHandle> subscribers = events.get(name);
+        subscribe(name, method, null, 0);
+    }
 
-        if (subscribers == null) {
-            subscribers = Sets.mutable.empty();
-            events.put(name, subscribers);
-        }
+    /**
+     * Subscribes a method to an event with the components it accesses.
+     * @see #subscribe(String, MethodHandle, ComponentAccess, int)
+     */
+    public void subscribe(String name, MethodHandle method, @Nullable ComponentAccess access) {
+        subscribe(name, method, access, 0);
+    }
 
-        subscribers.add(method);
+    /**
+     * Subscribes a method to an event with the components it accesses and a priority. When subscribing a non-static method,
+     * the instance to call it on has to be bound to the MethodHandle in advance with {@link MethodHandle#bindTo(Object)}.
+     * @param name     The name of the event to subscribe to
+     * @param method   The method to subscribe
+     * @param access   The components the method accesses, or null, if it could access anything. Only used by parallel events.
+     * @param priority Subscribers with a higher priority are called first
+     */
+    public void subscribe(String name, MethodHandle method, @Nullable ComponentAccess access, int priority) {
+        addSubscriber(EventRegistry.getId(name), method, access, priority);
+    }
+
+    /**
+     * Subscribes a listener to an event.
+     * @param name     The name of the event to subscribe to
+     * @param listener The listener to subscribe
+     */
+    public void subscribe(String name, EventListener listener) {
+        subscribe(name, listener, null, 0);
+    }
+
+    /**
+     * Subscribes a listener to an event with the components it accesses and a priority.
+     * @param name     The name of the event to subscribe to
+     * @param listener The listener to subscribe
+     * @param access   The components the listener accesses, or null, if it could access anything. Only used by parallel events.
+     * @param priority Subscribers with a higher priority are called first
+     */
+    public void subscribe(String name, EventListener listener, @Nullable ComponentAccess access, int priority) {
+        addSubscriber(EventRegistry.getId(name), listener, access, priority);
+    }
+
+    /**
+     * Adds a subscriber behind all subscribers with the same or a higher priority, so the order does not depend on hashing.
+     * Subscribing the same subscriber to the same event twice does nothing.
+     */
+    synchronized void addSubscriber(int id, Object subscriber, @Nullable ComponentAccess access, int priority) {
+        Event event = getOrCreateEvent(id);
+        Object[] current = event.subscribers;
+        for (Object existing : current)
+            if (existing.equals(subscriber)) return;
+
+        if (access != null) accesses.put(subscriber, access);
+
+        int[] priorities = event.priorities;
+        int index = 0;
+        while (index < current.length && priorities[index] >= priority) index++;
+        Object[] updated = new Object[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        updated[index] = subscriber;
+        System.arraycopy(current, index, updated, index + 1, current.length - index);
+        int[] updatedPriorities = new int[priorities.length + 1];
+        System.arraycopy(priorities, 0, updatedPriorities, 0, index);
+        updatedPriorities[index] = priority;
+        System.arraycopy(priorities, index, updatedPriorities, index + 1, priorities.length - index);
+        event.priorities = updatedPriorities;
+        event.subscribers = updated;
     }
 
     /**
@@ -64,11 +652,48 @@ public class EventManager {
      * @param method The method to unsubscribe
      */
     public void unsubscribe(String name, MethodHandle method) {
-        MutableSet<MethodHandle> subscribers = events.get(name);
-        if (subscribers == null) return;
+        removeSubscriber(EventRegistry.getId(name), method);
+    }
+
+    /**
+     * @param name     The name of the event to unsubscribe from
+     * @param listener The listener to unsubscribe
+     */
+    public void unsubscribe(String name, EventListener listener) {
+        removeSubscriber(EventRegistry.getId(name), listener);
+    }
 
-        subscribers.remove(method);
+    synchronized void removeSubscriber(int id, Object subscriber) {
+        Event event = getEvent(id);
+        if (event == null) return;
 
-        if (subscribers.size() == 0) events.remove(name);
+        Object[] current = event.subscribers;
+        int index = 0;
+        while (index < current.length && !current[index].equals(subscriber)) index++;
+        if (index == current.length) return;
+
+        Object[] updated = new Object[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, updated.length - index);
+        int[] priorities = event.priorities;
+        int[] updatedPriorities = new int[priorities.length - 1];
+        System.arraycopy(priorities, 0, updatedPriorities, 0, index);
+        System.arraycopy(priorities, index + 1, updatedPriorities, index, updatedPriorities.length - index);
+        event.priorities = updatedPriorities;
+        event.subscribers = updated;
+
+        if (!isSubscribed(subscriber)) {
+            accesses.remove(subscriber);
+            subscriberNames.remove(subscriber);
+        }
+    }
+
+    private boolean isSubscribed(Object subscriber) {
+        for (Event event : events) {
+            if (event == null) continue;
+            for (Object existing : event.subscribers)
+                if (existing.equals(subscriber)) return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,154 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.api.list.MutableList;
+import org.jetbrains.annotations.*;
+import org.totodev.engine.util.logging.*;
+
+import java.lang.management.*;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Measures how long every event and every subscriber takes and how much memory they allocate.
+ * Enabled per scene with {@link EventManager#enableProfiling()}. While profiling is disabled, invoking events only costs one null check. <br/>
+ * Allocations are measured with the {@link com.sun.management.ThreadMXBean ThreadMXBean} of the JVM and reported as -1 if it does not support it.
+ * Allocations of subscribers of parallel events that run on other threads are not included in the allocations of the event itself.
+ */
+public class EventProfiler {
+    /**
+     * The measurements of one event or subscriber.
+     * @param event          The name of the event
+     * @param subscriber     The name of the subscriber, or null, if this is the measurement of the whole event
+     * @param calls          How often the event or subscriber was called
+     * @param totalNanos     The time of all calls together
+     * @param maxNanos       The time of the longest call
+     * @param allocatedBytes The memory allocated by all calls together, or -1, if allocations can not be measured
+     */
+    public record Profile(String event, @Nullable String subscriber, long calls, long totalNanos, long maxNanos, long allocatedBytes) {
+        public double averageNanos() {
+            return calls == 0 ? 0 : (double) totalNanos / calls;
+        }
+    }
+
+    private static final class Measurements {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private void add(long nanos, long bytes) {
+            calls.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            allocatedBytes.add(bytes);
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean threads = findThreadBean();
+    private static final ScheduledExecutorService dumpExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "EventProfiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Measurements of every event, keyed by event name, with the event itself stored under the key null
+    private final Map<String, Map<Object, Measurements>> events = new ConcurrentHashMap<>();
+    private final Map<Object, String> subscriberNames;
+    private ScheduledFuture<?> dump;
+
+    EventProfiler(Map<Object, String> subscriberNames) {
+        this.subscriberNames = subscriberNames;
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean threadBean) || !threadBean.isThreadAllocatedMemorySupported()) return null;
+        if (!threadBean.isThreadAllocatedMemoryEnabled()) threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+
+    //region Recording
+    /**
+     * @return The bytes allocated by the current thread so far, or 0, if allocations can not be measured
+     */
+    long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @param subscriber The subscriber that was called, or null, for the whole event
+     */
+    void record(String event, @Nullable Object subscriber, long nanos, long bytes) {
+        Map<Object, Measurements> subscribers = events.get(event);
+        if (subscribers == null) subscribers = events.computeIfAbsent(event, e -> new ConcurrentHashMap<>());
+
+        Object key = subscriber == null ? this : subscriber;
+        Measurements measurements = subscribers.get(key);
+        if (measurements == null) measurements = subscribers.computeIfAbsent(key, k -> new Measurements());
+        measurements.add(nanos, bytes);
+    }
+    //endregion
+
+    /**
+     * @return The current measurements of all events and subscribers, sorted by total time
+     */
+    public MutableList<Profile> getProfiles() {
+        MutableList<Profile> profiles = Lists.mutable.empty();
+        events.forEach((event, subscribers) -> subscribers.forEach((key, m) -> profiles.add(new Profile(
+                event,
+                key == this ? null : subscriberNames.getOrDefault(key, key.toString()),
+                m.calls.sum(),
+                m.totalNanos.sum(),
+                m.maxNanos.get(),
+                threads == null ? -1 : m.allocatedBytes.sum()
+        ))));
+        return profiles.sortThisByLong(p -> -p.totalNanos());
+    }
+
+    /**
+     * Discards all measurements.
+     */
+    public void reset() {
+        events.clear();
+    }
+
+    /**
+     * @return A table of all measurements, sorted by total time
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder("Event profile:");
+        for (Profile p : getProfiles()) {
+            builder.append(String.format("%n  %-24s %-40s %8d calls %10.3f ms total %8.3f ms avg %8.3f ms max %10s",
+                    p.event(),
+                    p.subscriber() == null ? "(all)" : p.subscriber(),
+                    p.calls(),
+                    p.totalNanos() / 1e6,
+                    p.averageNanos() / 1e6,
+                    p.maxNanos() / 1e6,
+                    p.allocatedBytes() == -1 ? "" : p.allocatedBytes() / 1024 + " KiB"));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Logs the {@link #dump()} periodically until {@link #stopPeriodicDump()} is called.
+     * @param interval The time between two dumps
+     * @param unit     The unit of interval
+     * @param reset    Whether to discard the measurements after every dump, so every dump only contains the last interval
+     */
+    public synchronized void startPeriodicDump(long interval, @NotNull TimeUnit unit, boolean reset) {
+        stopPeriodicDump();
+        dump = dumpExecutor.scheduleAtFixedRate(() -> {
+            Logger.log(LogLevel.INFO, "EventProfiler", dump());
+            if (reset) reset();
+        }, interval, interval, unit);
+    }
+
+    public synchronized void stopPeriodicDump() {
+        if (dump == null) return;
+        dump.cancel(false);
+        dump = null;
+    }
+}
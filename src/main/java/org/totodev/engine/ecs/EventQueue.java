@@ -0,0 +1,163 @@
+package org.totodev.engine.ecs;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bounded ring buffer for the arguments of a {@link EventManager#setQueued(String, EventQueue, String) queued event}. <br/>
+ * Any number of threads can add arguments at the same time without locking. Only the event manager takes them out again,
+ * when the queue is flushed, and delivers them as one batch.
+ * Every slot has a sequence number that tells producers whether it is free and the consumer whether it is written.
+ */
+public abstract sealed class EventQueue permits EventQueue.OfInt, EventQueue.OfObject {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only accessed while flushing, which is synchronized on the queue
+    private long head = 0;
+
+    /**
+     * @param capacity The maximum number of arguments waiting for the next flush, rounded up to a power of two
+     */
+    protected EventQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1, was " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    public final int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return The position of a free slot, which must be {@link #publish(long) published} after writing it, or -1, if the queue is full
+     */
+    protected final long claim() {
+        long position = tail.get();
+        while (true) {
+            long sequence = sequences.get((int) (position & mask));
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) return position;
+                position = tail.get();
+            } else if (sequence < position) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    protected final int slot(long position) {
+        return (int) (position & mask);
+    }
+
+    protected final void publish(long position) {
+        sequences.set(slot(position), position + 1);
+    }
+
+    /**
+     * Moves all written arguments into the batch, in the order their slots were claimed.
+     * @return The number of arguments moved
+     */
+    final synchronized int drain() {
+        int count = 0;
+        while (count <= mask) {
+            int slot = slot(head);
+            if (sequences.get(slot) != head + 1) break;
+            take(slot, count++);
+            sequences.set(slot, head + mask + 1);
+            head++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves the argument in the slot to the given index of the batch.
+     */
+    protected abstract void take(int slot, int index);
+
+    /**
+     * A queue for events with a single int argument, for example entity ids.
+     * The batch is delivered to {@link EventListener.OfIntBatch} subscribers in one call.
+     */
+    public static final class OfInt extends EventQueue {
+        private final int[] values;
+        private final int[] batch;
+
+        public OfInt(int capacity) {
+            super(capacity);
+            values = new int[getCapacity()];
+            batch = new int[getCapacity()];
+        }
+
+        /**
+         * @return Whether the value was added, false if the queue is full
+         */
+        public boolean offer(int value) {
+            long position = claim();
+            if (position < 0) return false;
+            values[slot(position)] = value;
+            publish(position);
+            return true;
+        }
+
+        @Override
+        protected void take(int slot, int index) {
+            batch[index] = values[slot];
+        }
+
+        /**
+         * @return The array the last flushed batch was drained into. It is overwritten by the next flush.
+         */
+        int[] getBatch() {
+            return batch;
+        }
+    }
+
+    /**
+     * A queue for events with a single object argument.
+     * The batch is delivered to {@link EventListener.OfObjectBatch} subscribers in one call.
+     */
+    public static final class OfObject extends EventQueue {
+        private final Object[] values;
+        private final Object[] batch;
+
+        public OfObject(int capacity) {
+            super(capacity);
+            values = new Object[getCapacity()];
+            batch = new Object[getCapacity()];
+        }
+
+        /**
+         * @return Whether the value was added, false if the queue is full
+         */
+        public boolean offer(Object value) {
+            long position = claim();
+            if (position < 0) return false;
+            values[slot(position)] = value;
+            publish(position);
+            return true;
+        }
+
+        @Override
+        protected void take(int slot, int index) {
+            batch[index] = values[slot];
+            values[slot] = null;
+        }
+
+        Object[] getBatch() {
+            return batch;
+        }
+
+        /**
+         * Drops the references of a delivered batch, so the arguments can be garbage collected.
+         */
+        void clearBatch(int count) {
+            Arrays.fill(batch, 0, count, null);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.totodev.engine.ecs;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns event names to dense int ids, which are the same in every scene. <br/>
+ * Invoking an event by id indexes the subscriber table of the {@link EventManager} directly,
+ * so hot events should resolve their id once, for example in a static final field.
+ */
+public final class EventRegistry {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+
+    private EventRegistry() {
+    }
+
+    /**
+     * @param name The name of the event
+     * @return The id of the event, which is registered if it does not have an id yet
+     */
+    public static int getId(@NotNull String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : register(name);
+    }
+
+    private static synchronized int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+
+        String[] current = names;
+        String[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = name;
+        names = grown;
+        ids.put(name, current.length);
+        return current.length;
+    }
+
+    /**
+     * @param id The id of an event
+     * @return The name the id was registered for
+     */
+    public static String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return The number of registered events, which is higher than every id
+     */
+    public static int getCount() {
+        return names.length;
+    }
+}
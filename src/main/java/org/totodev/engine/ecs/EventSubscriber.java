@@ -4,9 +4,11 @@ import java.lang.annotation.*;
 
 /**
  * This annotation can be put on methods in systems to automatically register them to the specified event on start().
+ * Subscribers with a higher priority are called first. Subscribers with the same priority are called in the order they subscribed in.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface EventSubscriber {
     String value();
+    int priority() default 0;
 }
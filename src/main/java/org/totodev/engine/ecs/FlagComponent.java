@@ -1,28 +1,34 @@
 package org.totodev.engine.ecs;
 
-import org.eclipse.collections.api.set.primitive.MutableIntSet;
-import org.eclipse.collections.impl.factory.primitive.IntSets;
 import org.jetbrains.annotations.*;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 
 /**
- * A common component that contains just a boolean. Must be subclassed for usage.
+ * A common component that contains just a boolean. Must be subclassed for usage. <br/>
+ * The flagged entities are stored in an {@link EntityBitmap}, so flags can be combined with fast set operations,
+ * for example {@code enemy.getFlagged().and(visible.getFlagged()).andNot(dead.getFlagged())}.
  */
-public abstract class FlagComponent implements Component {
-    private final MutableIntSet set = IntSets.mutable.empty();
+public abstract class FlagComponent extends BaseComponent {
+    private final EntityBitmap set = new EntityBitmap();
 
     public final boolean isFlaged(int entityId) {
         return set.contains(entityId);
     }
 
     public final void setFlag(int entityId, boolean value) {
-        if (value) set.add(entityId);
-        else set.remove(entityId);
+        if (value ? set.add(entityId) : set.remove(entityId))
+            presenceChanged(entityId);
     }
 
     public final void invertFlag(int entityId) {
-        if (isFlaged(entityId)) set.remove(entityId);
-        else set.add(entityId);
+        setFlag(entityId, !isFlaged(entityId));
+    }
+
+    /**
+     * @return All flagged entities. Must not be modified, because that would bypass {@link #setFlag(int, boolean)} and leave queries outdated.
+     */
+    public final EntityBitmap getFlagged() {
+        return set;
     }
 
     @Override
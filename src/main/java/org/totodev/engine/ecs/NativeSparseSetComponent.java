@@ -0,0 +1,86 @@
+package org.totodev.engine.ecs;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * A {@link SparseSetComponent} that stores its data off-heap in a single native memory block instead of Java arrays.
+ * The data of every entity takes {@link #getStride()} bytes at {@code getAddress() + indexOf(entityId) * getStride()},
+ * so the data of all entities is one contiguous region that can be copied into GPU buffers as a whole. <br/>
+ * The memory has to be released with {@link #free()} when the component is no longer used.
+ */
+public abstract class NativeSparseSetComponent extends SparseSetComponent {
+    private final int stride;
+    private long address = NULL;
+
+    /**
+     * @param stride The number of bytes stored per entity
+     */
+    protected NativeSparseSetComponent(int stride) {
+        if (stride < 1) throw new IllegalArgumentException("Stride must be at least 1 byte, was " + stride);
+        this.stride = stride;
+    }
+
+    //region Native access
+    /**
+     * @return The number of bytes stored per entity
+     */
+    public final int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return The address of the data of the entity at dense index 0, or NULL, if no entity was added yet.
+     * The memory is reallocated when the component grows, so the address must be retrieved again after adding entities.
+     */
+    public final long getAddress() {
+        return address;
+    }
+
+    /**
+     * @param index The dense index, between 0 and {@link #size()}
+     * @return The address of the data at that index
+     */
+    public final long addressAt(int index) {
+        return address + (long) index * stride;
+    }
+
+    /**
+     * Creates a buffer over the data of all entities without copying it. The buffer must not be used after adding entities or calling {@link #free()}.
+     * @return A buffer with the capacity of {@code size() * getStride()} bytes, or null, if no entity was added yet
+     */
+    public final ByteBuffer getData() {
+        if (address == NULL) return null;
+        return memByteBuffer(address, size() * stride);
+    }
+
+    /**
+     * Removes all entities and releases the native memory. Adding entities afterwards allocates new memory, which has to be freed again.
+     */
+    public final void free() {
+        clearStorage();
+        nmemFree(address);
+        address = NULL;
+    }
+    //endregion
+
+    //region Storage
+    @Override
+    protected final void resizeData(int capacity) {
+        long newAddress = nmemRealloc(address, (long) capacity * stride);
+        if (newAddress == NULL) throw new OutOfMemoryError("Could not allocate " + (long) capacity * stride + " bytes of native component data");
+        address = newAddress;
+    }
+
+    @Override
+    protected final void moveData(int fromIndex, int toIndex) {
+        memCopy(addressAt(fromIndex), addressAt(toIndex), stride);
+    }
+
+    @Override
+    protected void initData(int index) {
+        memSet(addressAt(index), 0, stride);
+    }
+    //endregion
+}
@@ -0,0 +1,229 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.block.procedure.primitive.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A precompiled set of required components with a cached list of all entities that have every one of them.
+ * The list is updated by the scene when components are set or reset on an entity, so iterating it only costs as much as there are matches. <br/>
+ * Queries are created and cached by {@link Scene#query(Class[])}. Changing the required components of an entity while iterating
+ * over a query that contains it can reorder the entities and cause some to be skipped.
+ */
+public final class Query {
+    /**
+     * The default number of entities per chunk in {@link #forEachChunk(int, ChunkConsumer, ForkJoinPool)}.
+     * Chunks are small enough to balance well between threads, but large enough that scheduling them costs little compared to processing them.
+     */
+    public static final int DEFAULT_GRAIN_SIZE = 1024;
+
+    /**
+     * Processes a contiguous range of the matching entities of a query.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * @param entities The entities of the query. Only the range between from and to belongs to this chunk.
+         * @param from     The first index of the chunk, inclusive
+         * @param to       The last index of the chunk, exclusive
+         */
+        void accept(int[] entities, int from, int to);
+    }
+
+    private final Scene scene;
+    private final Class<? extends Component>[] componentTypes;
+    private final int[] typeIds;
+    private final long[] mask;
+
+    private int[] entities = new int[16];
+    // Index of every entity in entities, offset by one so that 0 means absent
+    private int[] indices = new int[16];
+    private int size = 0;
+
+    Query(Scene scene, Class<? extends Component>[] componentTypes, int[] typeIds) {
+        this.scene = scene;
+        this.componentTypes = componentTypes;
+        this.typeIds = typeIds;
+
+        int maxTypeId = Arrays.stream(typeIds).max().orElse(0);
+        mask = new long[(maxTypeId >>> 6) + 1];
+        for (int typeId : typeIds)
+            mask[typeId >>> 6] |= 1L << typeId;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * @return A copy of the component types required by this query
+     */
+    public Class<? extends Component>[] getComponentTypes() {
+        return componentTypes.clone();
+    }
+
+    //region Access
+    /**
+     * @return The number of entities that currently match this query
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index The index of the entity in this query, between 0 and {@link #size()}
+     * @return The entity at that index
+     */
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        return entities[index];
+    }
+
+    /**
+     * @return The first matching entity
+     * @throws NoSuchElementException If no entity matches this query
+     */
+    public int getFirst() {
+        if (size == 0) throw new NoSuchElementException("Query is empty");
+        return entities[0];
+    }
+
+    public boolean contains(int entityId) {
+        return entityId >= 0 && entityId < indices.length && indices[entityId] != 0;
+    }
+
+    public void forEach(IntProcedure procedure) {
+        for (int i = 0; i < size; i++)
+            procedure.value(entities[i]);
+    }
+
+    /**
+     * Calls the procedure only for matching entities whose data in a component was changed in or after a tick.
+     * Lets systems that keep derived data, like render or network state, update only what changed since they last ran.
+     * @param component The component to check for changes
+     * @param tick      The first tick to count changes from, usually the {@link Scene#getChangeTick() tick} the caller last ran in
+     * @param procedure Called with every changed entity
+     */
+    public void forEachChangedSince(SparseSetComponent component, long tick, IntProcedure procedure) {
+        for (int i = 0; i < size; i++) {
+            int entityId = entities[i];
+            if (component.changedSince(entityId, tick)) procedure.value(entityId);
+        }
+    }
+
+    /**
+     * @param procedure Called with the entity and its index in this query
+     */
+    public void forEachWithIndex(IntIntProcedure procedure) {
+        for (int i = 0; i < size; i++)
+            procedure.value(entities[i], i);
+    }
+
+    /**
+     * Splits the matching entities into contiguous chunks of at most grainSize entities and processes them on a work-stealing pool.
+     * If there are no more than grainSize entities, the consumer is called once on the current thread instead. Returns after all chunks are processed. <br/>
+     * The consumer is called from multiple threads at the same time, so it must only write data belonging to the entities of its own chunk.
+     * @param grainSize The maximum number of entities in a chunk
+     * @param consumer  Called once for every chunk
+     * @param pool      The pool to process the chunks on
+     */
+    public void forEachChunk(int grainSize, ChunkConsumer consumer, ForkJoinPool pool) {
+        forEachChunk(entities, 0, size, grainSize, consumer, pool);
+    }
+
+    /**
+     * Processes a range of any entity array in chunks, like {@link #forEachChunk(int, ChunkConsumer, ForkJoinPool)} does for the entities of a query.
+     * @param entities The entities to process
+     * @param from     The first index to process
+     * @param to       The index after the last one to process
+     */
+    public static void forEachChunk(int[] entities, int from, int to, int grainSize, ChunkConsumer consumer, ForkJoinPool pool) {
+        if (grainSize < 1) throw new IllegalArgumentException("Grain size must be at least 1, was " + grainSize);
+        if (from >= to) return;
+        if (to - from <= grainSize) {
+            consumer.accept(entities, from, to);
+            return;
+        }
+
+        ChunkTask task = new ChunkTask(entities, from, to, grainSize, consumer);
+        // Invoking directly lets a worker of the same pool help with its own chunks instead of blocking
+        if (ForkJoinTask.getPool() == pool) task.invoke();
+        else pool.invoke(task);
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+        private final int[] entities;
+        private final int from, to, grainSize;
+        private final ChunkConsumer consumer;
+
+        private ChunkTask(int[] entities, int from, int to, int grainSize, ChunkConsumer consumer) {
+            this.entities = entities;
+            this.from = from;
+            this.to = to;
+            this.grainSize = grainSize;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grainSize) {
+                consumer.accept(entities, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(entities, from, middle, grainSize, consumer), new ChunkTask(entities, middle, to, grainSize, consumer));
+        }
+    }
+
+    /**
+     * @return A copy of all matching entities
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(entities, size);
+    }
+    //endregion
+
+    //region Maintenance
+    /**
+     * @param entityMasks The component masks of all entities, in rows of maskWords
+     * @param offset      The start of the row of the entity to check
+     */
+    boolean matches(long[] entityMasks, int offset) {
+        for (int i = 0; i < mask.length; i++)
+            if ((entityMasks[offset + i] & mask[i]) != mask[i]) return false;
+        return true;
+    }
+
+    void add(int entityId) {
+        if (contains(entityId)) return;
+        if (size == entities.length) entities = Arrays.copyOf(entities, size * 2);
+        if (entityId >= indices.length) indices = Arrays.copyOf(indices, Math.max(indices.length * 2, entityId + 1));
+        entities[size] = entityId;
+        indices[entityId] = ++size;
+    }
+
+    void remove(int entityId) {
+        if (!contains(entityId)) return;
+        int index = indices[entityId] - 1;
+        int last = entities[--size];
+        entities[index] = last;
+        indices[last] = index + 1;
+        indices[entityId] = 0;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++)
+            indices[entities[i]] = 0;
+        size = 0;
+    }
+
+    int[] getTypeIds() {
+        return typeIds;
+    }
+    //endregion
+}
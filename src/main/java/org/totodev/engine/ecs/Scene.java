@@ -1,20 +1,25 @@
 package org.totodev.engine.ecs;
 
-import org.eclipse.collections.api.factory.Maps;
-import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.api.IntIterable;
+import org.eclipse.collections.api.factory.*;
+import org.eclipse.collections.api.list.MutableList;
 import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.api.set.ImmutableSet;
 import org.eclipse.collections.api.set.primitive.*;
 import org.eclipse.collections.api.stack.primitive.MutableIntStack;
-import org.eclipse.collections.impl.factory.Lists;
 import org.eclipse.collections.impl.factory.primitive.*;
 import org.jetbrains.annotations.NotNull;
-import org.totodev.engine.core.CoreEvents;
+import org.totodev.engine.core.*;
+import org.totodev.engine.util.logging.*;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Scene {
     public final EventManager events = new EventManager();
+    public final SnapshotManager snapshots = new SnapshotManager(this);
 
     private final MutableIntSet entities = IntSets.mutable.empty();
     private final MutableIntStack freeIds = IntStacks.mutable.empty(); //TODO: FIFO Queue
@@ -24,6 +29,29 @@ public class Scene {
     private final MutableMap<Class<? extends GlobalComponent>, GlobalComponent> globalComponents = Maps.mutable.empty();
     private final MutableMap<Class<? extends BaseSystem>, BaseSystem> systems = Maps.mutable.empty();
 
+    //region Queries
+    private final MutableObjectIntMap<Class<? extends Component>> componentTypeIds = ObjectIntMaps.mutable.empty();
+    private final MutableList<MutableList<Query>> queriesByType = Lists.mutable.empty();
+    private final MutableMap<ImmutableSet<Class<? extends Component>>, Query> queries = Maps.mutable.empty();
+    // Bitmask of the components present on every entity, stored in rows of maskWords longs
+    private long[] entityMasks = new long[64];
+    private int maskWords = 1;
+    //endregion
+
+    //region Commands
+    private final List<CommandBuffer> commandBuffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<CommandBuffer> threadCommandBuffer = ThreadLocal.withInitial(() -> {
+        CommandBuffer buffer = new CommandBuffer();
+        commandBuffers.add(buffer);
+        return buffer;
+    });
+    // Entities destroyed during the current playback, so commands recorded for them are not applied to an entity reusing their id
+    private final MutableIntSet destroyedInPlayback = IntSets.mutable.empty();
+    //endregion
+
+    // Incremented once per update, used to track when component data was last changed
+    private volatile long changeTick = 1;
+
     private boolean isRunning = false;
 
     public boolean isRunning() {
@@ -44,18 +72,73 @@ public class Scene {
         isRunning = false;
     }
 
+    /**
+     * @return The current tick, which is stored by components as the last change of data written in this tick
+     * @see SparseSetComponent#changedSince(int, long)
+     */
+    public long getChangeTick() {
+        return changeTick;
+    }
+
+    /**
+     * Starts a new tick. Called by the {@link org.totodev.engine.core.systems.Updater Updater} before every update,
+     * and by systems that have to tell changes after them apart from earlier ones of the same update, like the {@link org.totodev.engine.rendering.Renderer2d Renderer2d}.
+     * @return The new tick
+     */
+    public long advanceChangeTick() {
+        return ++changeTick;
+    }
+
+    /**
+     * @return A value all entity ids of this scene are below, for sizing arrays indexed by entity id
+     */
+    public int getIdRange() {
+        return highestId;
+    }
+
     /**
      * Creates a new entity.
      * @return The id of the new entity
      */
     public int createEntity() {
         int newId = freeIds.isEmpty() ? highestId++ : freeIds.pop();
-        events.invokeEvent(CoreEvents.CREATE_ENTITY, newId);
+        ensureMaskCapacity(newId);
+        events.invokeEvent(CoreEvents.CREATE_ENTITY_ID, newId);
         entities.add(newId);
-        events.invokeEvent(CoreEvents.ENTITY_CREATED, newId);
+        events.invokeEvent(CoreEvents.ENTITY_CREATED_ID, newId);
         return newId;
     }
 
+    /**
+     * Creates multiple entities at once. Reuses the ids of destroyed entities first and reserves the rest as one range.
+     * Fires {@link CoreEvents#CREATE_ENTITIES} and {@link CoreEvents#ENTITIES_CREATED} once for the whole batch,
+     * followed by {@link CoreEvents#CREATE_ENTITY} and {@link CoreEvents#ENTITY_CREATED} for every entity, if they have subscribers.
+     * @param count The number of entities to create
+     * @return The ids of the new entities
+     */
+    public int[] createEntities(int count) {
+        if (count < 0) throw new IllegalArgumentException("Entity count must not be negative, was " + count);
+        if (count == 0) return new int[0];
+
+        int[] newIds = new int[count];
+        int reused = Math.min(count, freeIds.size());
+        for (int i = 0; i < reused; i++)
+            newIds[i] = freeIds.pop();
+
+        int firstId = highestId;
+        highestId += count - reused;
+        for (int i = reused; i < count; i++)
+            newIds[i] = firstId + i - reused;
+        if (highestId > 0) ensureMaskCapacity(highestId - 1);
+
+        events.invokeEvent(CoreEvents.CREATE_ENTITIES_ID, (Object) newIds);
+        invokePerEntity(CoreEvents.CREATE_ENTITY_ID, newIds);
+        entities.addAll(newIds);
+        events.invokeEvent(CoreEvents.ENTITIES_CREATED_ID, (Object) newIds);
+        invokePerEntity(CoreEvents.ENTITY_CREATED_ID, newIds);
+        return newIds;
+    }
+
     /**
      * Destroys an entity and removes it from all components.
      * @param entityId The id of the entity to destroy
@@ -64,11 +147,76 @@ public class Scene {
         if (!isAlive(entityId)) return;
 
         components.forEach((c) -> c.resetEntity(entityId));
-        events.invokeEvent(CoreEvents.DESTROY_ENTITY, entityId);
+        events.invokeEvent(CoreEvents.DESTROY_ENTITY_ID, entityId);
 
         entities.remove(entityId);
+        Arrays.fill(entityMasks, entityId * maskWords, (entityId + 1) * maskWords, 0);
+        queries.forEach(q -> q.remove(entityId));
         freeIds.push(entityId);
-        events.invokeEvent(CoreEvents.ENTITY_DESTROYED, entityId);
+        events.invokeEvent(CoreEvents.ENTITY_DESTROYED_ID, entityId);
+    }
+
+    /**
+     * Destroys multiple entities at once and removes them from all components. Ids of entities that do not exist are ignored.
+     * Fires {@link CoreEvents#DESTROY_ENTITIES} and {@link CoreEvents#ENTITIES_DESTROYED} once for the whole batch,
+     * followed by {@link CoreEvents#DESTROY_ENTITY} and {@link CoreEvents#ENTITY_DESTROYED} for every entity, if they have subscribers.
+     * @param entityIds The ids of the entities to destroy
+     */
+    public void destroyEntities(@NotNull IntIterable entityIds) {
+        MutableIntSet toDestroy = IntSets.mutable.empty();
+        entityIds.forEach(e -> {
+            if (isAlive(e)) toDestroy.add(e);
+        });
+        if (toDestroy.isEmpty()) return;
+        int[] ids = toDestroy.toArray();
+
+        // Clearing the masks first turns the presence updates caused by resetting the components into no-ops
+        queries.forEach(q -> {
+            for (int id : ids)
+                q.remove(id);
+        });
+        for (int id : ids)
+            Arrays.fill(entityMasks, id * maskWords, (id + 1) * maskWords, 0);
+        components.forEach(c -> c.resetEntities(ids));
+        events.invokeEvent(CoreEvents.DESTROY_ENTITIES_ID, (Object) ids);
+        invokePerEntity(CoreEvents.DESTROY_ENTITY_ID, ids);
+
+        entities.removeAll(ids);
+        for (int id : ids)
+            freeIds.push(id);
+        events.invokeEvent(CoreEvents.ENTITIES_DESTROYED_ID, (Object) ids);
+        invokePerEntity(CoreEvents.ENTITY_DESTROYED_ID, ids);
+    }
+
+    /**
+     * Invokes a single entity event once for every entity of a batch, so subscribers that only know the single entity events still see batched entities.
+     * Costs nothing if the event has no subscribers.
+     */
+    private void invokePerEntity(int eventId, int[] ids) {
+        if (!events.hasSubscribers(eventId)) return;
+        for (int id : ids)
+            events.invokeEvent(eventId, id);
+    }
+
+    /**
+     * Gets the command buffer of the current thread. Systems that run in {@link EventManager#setParallel(String, boolean) parallel events}
+     * or iterate over a query should record structural changes there instead of applying them directly.
+     * @return The command buffer of the current thread for this scene
+     */
+    public @NotNull CommandBuffer getCommandBuffer() {
+        return threadCommandBuffer.get();
+    }
+
+    /**
+     * Applies and clears the command buffers of all threads. Must not be called while systems could still be recording commands,
+     * which is why the {@link org.totodev.engine.core.systems.Updater Updater} calls it between update phases.
+     */
+    public void playbackCommands() {
+        for (CommandBuffer buffer : commandBuffers)
+            buffer.beginPlayback();
+        for (CommandBuffer buffer : commandBuffers)
+            if (!buffer.isEmpty()) buffer.playback(this, destroyedInPlayback);
+        destroyedInPlayback.clear();
     }
 
     /**
@@ -77,8 +225,14 @@ public class Scene {
      */
     public void addComponent(@NotNull Component component) {
         Class<? extends Component> componentType = component.getClass();
-        components.put(componentType, component);
-        events.invokeEvent(CoreEvents.COMPONENT_ADDED, component);
+        int typeId = getComponentTypeId(componentType);
+
+        Component oldComponent = components.put(componentType, component);
+        if (oldComponent instanceof BaseComponent c) c.detach();
+        if (component instanceof BaseComponent c) c.attach(this, typeId);
+        entities.forEach(e -> updatePresence(typeId, e, component.isPresentOn(e)));
+
+        events.invokeEvent(CoreEvents.COMPONENT_ADDED_ID, component);
     }
 
     /**
@@ -87,7 +241,12 @@ public class Scene {
      */
     public void removeComponent(@NotNull Class<? extends Component> componentType) {
         Component component = components.remove(componentType);
-        events.invokeEvent(CoreEvents.COMPONENT_REMOVED, component);
+        if (component instanceof BaseComponent c) c.detach();
+
+        int typeId = componentTypeIds.getIfAbsent(componentType, -1);
+        if (typeId != -1) entities.forEach(e -> updatePresence(typeId, e, false));
+
+        events.invokeEvent(CoreEvents.COMPONENT_REMOVED_ID, component);
     }
 
     public boolean hasComponent(Class<? extends Component> componentType) {
@@ -113,7 +272,7 @@ public class Scene {
     public void addGlobalComponent(@NotNull GlobalComponent component) {
         Class<? extends GlobalComponent> componentType = component.getClass();
         globalComponents.put(componentType, component);
-        events.invokeEvent(CoreEvents.GLOBAL_COMPONENT_ADDED, component);
+        events.invokeEvent(CoreEvents.GLOBAL_COMPONENT_ADDED_ID, component);
     }
 
     /**
@@ -122,7 +281,7 @@ public class Scene {
      */
     public void removeGlobalComponent(@NotNull Class<? extends GlobalComponent> componentType) {
         GlobalComponent component = globalComponents.remove(componentType);
-        events.invokeEvent(CoreEvents.GLOBAL_COMPONENT_REMOVED, component);
+        events.invokeEvent(CoreEvents.GLOBAL_COMPONENT_REMOVED_ID, component);
     }
 
     public boolean hasGlobalComponent(Class<? extends GlobalComponent> componentType) {
@@ -143,13 +302,18 @@ public class Scene {
 
     /**
      * Adds a system to this scene. If a system of this type has already been added, it will be overwritten.
+     * Systems annotated with {@link RequiresGraphics} are skipped while the engine is {@link Engine#isHeadless() headless}.
      * @param system The system to add
      */
     public void addSystem(@NotNull BaseSystem system) {
+        if (Engine.isHeadless() && system.getClass().isAnnotationPresent(RequiresGraphics.class)) {
+            Logger.log(LogLevel.DEBUG, "Scene", "Skipped system " + system.getClass().getSimpleName() + " because the engine is headless");
+            return;
+        }
         systems.put(system.getClass(), system);
         system.added(this);
         if (isRunning) system.start(this);
-        events.invokeEvent(CoreEvents.SYSTEM_ADDED, system);
+        events.invokeEvent(CoreEvents.SYSTEM_ADDED_ID, system);
     }
 
     /**
@@ -158,36 +322,158 @@ public class Scene {
      */
     public void removeSystem(@NotNull Class<? extends BaseSystem> systemType) {
         BaseSystem system = systems.remove(systemType);
+        // Systems that were skipped while headless were never added
+        if (system == null) return;
         if (isRunning) system.stop(this);
         system.removed(this);
-        events.invokeEvent(CoreEvents.SYSTEM_REMOVED, system);
+        events.invokeEvent(CoreEvents.SYSTEM_REMOVED_ID, system);
     }
 
     public boolean hasSystem(@NotNull Class<? extends BaseSystem> systemType) {
         return systems.containsKey(systemType);
     }
 
+    /**
+     * Retrieves a system from this scene
+     * @param systemType The runtime type of the system to retrieve
+     * @return The retrieved system, or null, if no system of this type was added
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends BaseSystem> T getSystem(@NotNull Class<T> systemType) {
+        return (T) systems.get(systemType);
+    }
+
     public IntSet getAllEntities() {
         return entities;
     }
 
     /**
-     * Gets a list of all entities that have every specified component. Components not added to this scene will be ignored.
+     * Gets a list of all entities that have every specified component. Components not added to this scene will be ignored. <br/>
+     * This copies the entities into a new list on every call. Use {@link #query(Class[])} in code that runs every update.
      * @param componentTypes The components to check for
      * @return A list of all entities that have all the specified components
      */
+    @SuppressWarnings("unchecked")
     public @NotNull MutableIntList getEntitiesByComponents(@NotNull Class<? extends Component>... componentTypes) {
-        ImmutableList<Component> requiredComponents = Lists.immutable.fromStream(
-                Arrays.stream(componentTypes).map(this::getComponent).filter(Objects::nonNull));
+        Class<? extends Component>[] requiredTypes = Arrays.stream(componentTypes).filter(this::hasComponent).toArray(Class[]::new);
+        if (requiredTypes.length == 0) return IntLists.mutable.empty();
+        return IntLists.mutable.of(query(requiredTypes).toArray());
+    }
 
-        if (requiredComponents.isEmpty()) return IntLists.mutable.empty();
+    /**
+     * Gets the cached query for all entities that have every specified component, creating it if this combination was not requested before.
+     * The query is kept up to date as components are set or reset, so it can be stored and iterated on every update.
+     * Unlike {@link #getEntitiesByComponents(Class[])}, components not added to this scene are not ignored, so the query stays empty until they are added. <br/>
+     * If any of the components does not extend {@link BaseComponent}, the query is rebuilt on every call to this method instead.
+     * @param componentTypes The components to check for
+     * @return The query for that set of components
+     */
+    @SuppressWarnings("unchecked")
+    public @NotNull Query query(@NotNull Class<? extends Component>... componentTypes) {
+        ImmutableSet<Class<? extends Component>> key = Sets.immutable.of(componentTypes);
+        Query query = queries.get(key);
 
-        MutableIntList temp = IntLists.mutable.empty();
-        entities.forEach(e -> {
-            if (requiredComponents.stream().allMatch(c -> c.isPresentOn(e))) temp.add(e);
-        });
+        if (query == null) {
+            Class<? extends Component>[] requiredTypes = key.toArray(new Class[0]);
+            int[] typeIds = Arrays.stream(requiredTypes).mapToInt(this::getComponentTypeId).toArray();
+            query = new Query(this, requiredTypes, typeIds);
+
+            for (int typeId : typeIds)
+                queriesByType.get(typeId).add(query);
+            queries.put(key, query);
+            rebuildQuery(query);
+        } else if (!isTracked(query)) {
+            rebuildQuery(query);
+        }
+
+        return query;
+    }
+
+    /**
+     * Processes the entities of a query in chunks of {@link Query#DEFAULT_GRAIN_SIZE} on the {@link EventManager#getExecutor() executor} of this scene.
+     * @see Query#forEachChunk(int, Query.ChunkConsumer, java.util.concurrent.ForkJoinPool)
+     */
+    public void forEachChunk(@NotNull Query query, @NotNull Query.ChunkConsumer consumer) {
+        forEachChunk(query, Query.DEFAULT_GRAIN_SIZE, consumer);
+    }
+
+    /**
+     * Processes the entities of a query in chunks on the {@link EventManager#getExecutor() executor} of this scene.
+     * @see Query#forEachChunk(int, Query.ChunkConsumer, java.util.concurrent.ForkJoinPool)
+     */
+    public void forEachChunk(@NotNull Query query, int grainSize, @NotNull Query.ChunkConsumer consumer) {
+        query.forEachChunk(grainSize, consumer, events.getExecutor());
+    }
+
+    private boolean isTracked(Query query) {
+        for (Class<? extends Component> componentType : query.getComponentTypes()) {
+            Component component = components.get(componentType);
+            if (component != null && !(component instanceof BaseComponent)) return false;
+        }
+        return true;
+    }
+
+    private void rebuildQuery(Query query) {
+        query.clear();
+        if (isTracked(query)) {
+            entities.forEach(e -> {
+                if (query.matches(entityMasks, e * maskWords)) query.add(e);
+            });
+        } else {
+            Component[] requiredComponents = Arrays.stream(query.getComponentTypes()).map(components::get).toArray(Component[]::new);
+            entities.forEach(e -> {
+                for (Component c : requiredComponents)
+                    if (c == null || !c.isPresentOn(e)) return;
+                query.add(e);
+            });
+        }
+    }
+
+    /**
+     * Updates the component mask of an entity and all affected queries. Called by {@link BaseComponent#presenceChanged(int)}.
+     */
+    void updatePresence(int typeId, int entityId, boolean present) {
+        if (!isAlive(entityId)) return;
+
+        int offset = entityId * maskWords;
+        int word = offset + (typeId >>> 6);
+        long bit = 1L << typeId;
+        if (((entityMasks[word] & bit) != 0) == present) return;
+        entityMasks[word] ^= bit;
+
+        MutableList<Query> affectedQueries = queriesByType.get(typeId);
+        for (int i = 0; i < affectedQueries.size(); i++) {
+            Query query = affectedQueries.get(i);
+            if (!present) query.remove(entityId);
+            else if (query.matches(entityMasks, offset)) query.add(entityId);
+        }
+    }
+
+    private int getComponentTypeId(Class<? extends Component> componentType) {
+        int typeId = componentTypeIds.getIfAbsent(componentType, -1);
+        if (typeId != -1) return typeId;
+
+        typeId = componentTypeIds.size();
+        componentTypeIds.put(componentType, typeId);
+        queriesByType.add(Lists.mutable.empty());
+
+        if ((typeId >>> 6) >= maskWords) {
+            int newMaskWords = maskWords + 1;
+            int rows = entityMasks.length / maskWords;
+            long[] newMasks = new long[rows * newMaskWords];
+            for (int i = 0; i < rows; i++)
+                System.arraycopy(entityMasks, i * maskWords, newMasks, i * newMaskWords, maskWords);
+            entityMasks = newMasks;
+            maskWords = newMaskWords;
+        }
+
+        return typeId;
+    }
 
-        return temp;
+    private void ensureMaskCapacity(int entityId) {
+        int rows = entityMasks.length / maskWords;
+        if (entityId < rows) return;
+        entityMasks = Arrays.copyOf(entityMasks, Math.max(rows * 2, entityId + 1) * maskWords);
     }
 
     /**
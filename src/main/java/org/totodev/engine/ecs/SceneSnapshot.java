@@ -0,0 +1,58 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.impl.factory.Maps;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state of all tracked components of a scene at the end of one update, published by {@link SnapshotManager#publish()}.
+ * A snapshot is retrieved with {@link SnapshotManager#acquire()} and must be {@link #close() closed} exactly once when it is no longer read,
+ * so it can be reused for a later update. It does not change while it is acquired.
+ */
+public final class SceneSnapshot implements AutoCloseable {
+    // Number of readers, or -1 while the snapshot is being written
+    final AtomicInteger references = new AtomicInteger();
+    final MutableMap<Class<?>, Object> states = Maps.mutable.empty();
+    long tick;
+
+    SceneSnapshot() {
+    }
+
+    /**
+     * @return The {@link Scene#getChangeTick() tick} this snapshot was taken in
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @param componentType The type of a tracked component
+     * @return The snapshot of that component, or null, if it is not tracked or was not added to the scene
+     */
+    @SuppressWarnings("unchecked")
+    public <S> @Nullable S get(Class<? extends Snapshottable<S>> componentType) {
+        return (S) states.get(componentType);
+    }
+
+    /**
+     * Tries to register a reader. Fails if the snapshot is being written.
+     */
+    boolean tryAcquire() {
+        int count;
+        do {
+            count = references.get();
+            if (count < 0) return false;
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Releases this snapshot, so it can be overwritten. Must not be read afterwards.
+     */
+    @Override
+    public void close() {
+        references.decrementAndGet();
+    }
+}
@@ -0,0 +1,114 @@
+package org.totodev.engine.ecs;
+
+import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.api.list.MutableList;
+import org.jetbrains.annotations.*;
+import org.totodev.engine.core.CoreEvents;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes snapshots of selected components, so other threads like renderers, network replicators or autosavers
+ * can read a consistent state of the scene without locks while the next update already runs. <br/>
+ * Components are opted in with {@link #track(Class)} and have to implement {@link Snapshottable}. The {@link org.totodev.engine.core.systems.Updater Updater}
+ * calls {@link #publish()} after every update. Snapshots are reused once no reader holds them anymore, so publishing allocates nothing in the long run.
+ */
+public class SnapshotManager {
+    private final Scene scene;
+    private final List<Class<? extends Snapshottable<?>>> tracked = new CopyOnWriteArrayList<>();
+    // All snapshots ever created, only accessed by the publishing thread
+    private final MutableList<SceneSnapshot> pool = Lists.mutable.empty();
+    private volatile SceneSnapshot latest;
+
+    SnapshotManager(Scene scene) {
+        this.scene = scene;
+    }
+
+    /**
+     * Includes a component in all following snapshots.
+     * @param componentType The type of a component or global component that implements {@link Snapshottable}
+     */
+    public void track(@NotNull Class<? extends Snapshottable<?>> componentType) {
+        if (!tracked.contains(componentType)) tracked.add(componentType);
+    }
+
+    /**
+     * Excludes a component from all following snapshots.
+     */
+    public void untrack(@NotNull Class<? extends Snapshottable<?>> componentType) {
+        tracked.remove(componentType);
+    }
+
+    public boolean isTracked(@NotNull Class<? extends Snapshottable<?>> componentType) {
+        return tracked.contains(componentType);
+    }
+
+    /**
+     * Takes a snapshot of all tracked components, makes it the latest one and invokes {@link CoreEvents#SNAPSHOT_PUBLISHED}.
+     * Without tracked components, there is no latest snapshot anymore.
+     * Must only be called by one thread at a time, while no system writes to the tracked components.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void publish() {
+        if (tracked.isEmpty()) {
+            latest = null;
+            return;
+        }
+
+        SceneSnapshot target = claimUnused();
+        target.tick = scene.getChangeTick();
+        // The reused snapshot can still hold states of components that were untracked since
+        target.states.keySet().removeIf(type -> !tracked.contains(type));
+        for (Class<? extends Snapshottable<?>> type : tracked) {
+            Snapshottable component = getComponent(type);
+            if (component == null) target.states.remove(type);
+            else target.states.put(type, component.snapshot(target.states.get(type)));
+        }
+
+        target.references.set(0);
+        latest = target;
+        scene.events.invokeEvent(CoreEvents.SNAPSHOT_PUBLISHED_ID);
+    }
+
+    /**
+     * Finds a snapshot without readers that is not the latest one and marks it as being written, or creates a new one.
+     */
+    private SceneSnapshot claimUnused() {
+        SceneSnapshot current = latest;
+        for (SceneSnapshot snapshot : pool)
+            if (snapshot != current && snapshot.references.compareAndSet(0, -1)) return snapshot;
+
+        SceneSnapshot snapshot = new SceneSnapshot();
+        snapshot.references.set(-1);
+        pool.add(snapshot);
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nullable Snapshottable<?> getComponent(Class<? extends Snapshottable<?>> type) {
+        if (Component.class.isAssignableFrom(type)) {
+            Class<? extends Component> componentType = (Class<? extends Component>) type;
+            return scene.hasComponent(componentType) ? (Snapshottable<?>) scene.getComponent(componentType) : null;
+        }
+        if (GlobalComponent.class.isAssignableFrom(type)) {
+            Class<? extends GlobalComponent> componentType = (Class<? extends GlobalComponent>) type;
+            return scene.hasGlobalComponent(componentType) ? (Snapshottable<?>) scene.getGlobalComponent(componentType) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the latest snapshot and registers the calling thread as a reader. Can be called from any thread.
+     * The snapshot must be closed when it is no longer read, preferably with try-with-resources.
+     * @return The latest snapshot, or null, if none was published yet or nothing was tracked at the last publish
+     */
+    public @Nullable SceneSnapshot acquire() {
+        while (true) {
+            SceneSnapshot snapshot = latest;
+            if (snapshot == null) return null;
+            // Fails only if the snapshot was replaced and is being overwritten already, in which case there is a newer one
+            if (snapshot.tryAcquire()) return snapshot;
+        }
+    }
+}
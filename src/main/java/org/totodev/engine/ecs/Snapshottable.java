@@ -0,0 +1,17 @@
+package org.totodev.engine.ecs;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * A component or global component that can copy its state into a snapshot, which can be read from other threads while the scene keeps changing.
+ * @param <S> The type of the snapshot
+ * @see SnapshotManager
+ */
+public interface Snapshottable<S> {
+    /**
+     * Copies the current state into a snapshot. Called on the update thread while no system writes to this component.
+     * @param reuse An older snapshot of this component that is no longer read and should be overwritten to avoid allocating, or null
+     * @return The filled snapshot, either reuse or a new one
+     */
+    @NotNull S snapshot(@Nullable S reuse);
+}
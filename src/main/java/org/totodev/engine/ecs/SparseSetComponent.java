@@ -0,0 +1,177 @@
+package org.totodev.engine.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Base class for components that store their data in densely packed arrays.
+ * Every entity this component is present on gets an index between 0 and {@link #size()}, which subclasses use to index their data arrays.
+ * Removing an entity moves the data of the last entity into the freed slot, so the data stays packed and can be iterated linearly. <br/>
+ * Looking up the index of an entity is a single array access, so reading a value costs no hashing. <br/>
+ * Every entity also stores the {@link Scene#getChangeTick() tick} its data was last changed in, so systems can skip entities that did not change.
+ */
+public abstract class SparseSetComponent extends BaseComponent {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Index of every entity in dense, offset by one so that 0 means absent
+    private int[] sparse = new int[INITIAL_CAPACITY];
+    private int[] dense = new int[0];
+    private long[] changeTicks = new long[0];
+    private int size = 0;
+
+    //region Data hooks
+    /**
+     * Resizes all data arrays to the new capacity, keeping the existing values. The data arrays start out empty and are first resized when the first entity is added.
+     * @param capacity The new minimum length of the data arrays
+     */
+    protected abstract void resizeData(int capacity);
+
+    /**
+     * Copies the data of one index to another. Used to keep the data packed when an entity is removed.
+     * @param fromIndex The index to copy from
+     * @param toIndex   The index to copy to
+     */
+    protected abstract void moveData(int fromIndex, int toIndex);
+
+    /**
+     * Sets the data at an index to its default values. Called when an entity is added, before any value is set.
+     * @param index The index of the new entity
+     */
+    protected abstract void initData(int index);
+
+    /**
+     * Clears the data at an index that is no longer used. Only needs to be overridden to release references to objects.
+     * @param index The unused index
+     */
+    protected void clearData(int index) {
+    }
+    //endregion
+
+    //region Dense access
+    /**
+     * @return The number of entities this component is present on
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * @param index The dense index, between 0 and {@link #size()}
+     * @return The entity stored at this index
+     */
+    public final int entityAt(int index) {
+        return dense[index];
+    }
+
+    /**
+     * @param entityId The entity to get the dense index of
+     * @return The dense index of this entity, or -1, if this component is not present on that entity
+     */
+    public final int indexOf(int entityId) {
+        if (entityId < 0 || entityId >= sparse.length) return -1;
+        return sparse[entityId] - 1;
+    }
+
+    /**
+     * Adds an entity to this component if it is not already present, initializing its data with the default values.
+     * Also marks the data of the entity as changed, so setters should call this before writing.
+     * @param entityId The entity to add
+     * @return The dense index of that entity
+     */
+    protected final int addEntity(int entityId) {
+        int index = indexOf(entityId);
+        if (index != -1) {
+            markChangedAt(index);
+            return index;
+        }
+
+        if (entityId >= sparse.length) sparse = Arrays.copyOf(sparse, Math.max(sparse.length * 2, entityId + 1));
+        if (size == dense.length) {
+            dense = Arrays.copyOf(dense, Math.max(INITIAL_CAPACITY, size * 2));
+            changeTicks = Arrays.copyOf(changeTicks, dense.length);
+            resizeData(dense.length);
+        }
+
+        index = size++;
+        dense[index] = entityId;
+        sparse[entityId] = index + 1;
+        initData(index);
+        markChangedAt(index);
+
+        presenceChanged(entityId);
+        return index;
+    }
+    //endregion
+
+    //region Change ticks
+    /**
+     * Marks the data at a dense index as changed in the current tick of the scene. Must be called by code that writes to the data arrays directly.
+     * @param index The dense index, between 0 and {@link #size()}
+     */
+    public final void markChangedAt(int index) {
+        Scene scene = getScene();
+        changeTicks[index] = scene == null ? 0 : scene.getChangeTick();
+    }
+
+    /**
+     * @param entityId The entity to get the change tick of
+     * @return The tick the data of this entity was last changed in, or -1, if this component is not present on that entity
+     */
+    public final long getChangeTick(int entityId) {
+        int index = indexOf(entityId);
+        return index == -1 ? -1 : changeTicks[index];
+    }
+
+    /**
+     * @param entityId The entity to check
+     * @param tick     The first tick to count changes from
+     * @return Whether the data of this entity was changed in or after that tick. False if this component is not present on the entity.
+     */
+    public final boolean changedSince(int entityId, long tick) {
+        return getChangeTick(entityId) >= tick;
+    }
+    //endregion
+
+    /**
+     * Copies which entities this component is present on and their dense indices into a snapshot.
+     * Subclasses implementing {@link Snapshottable} call this and then copy their data arrays up to {@link #size()}.
+     * @param target The snapshot to copy into
+     */
+    protected final void copyIndexTo(SparseSetSnapshot target) {
+        target.copyIndex(sparse, dense, size);
+    }
+
+    @Override
+    public final void resetEntity(int entityId) {
+        int index = indexOf(entityId);
+        if (index == -1) return;
+
+        int last = --size;
+        if (index != last) {
+            int lastEntity = dense[last];
+            moveData(last, index);
+            changeTicks[index] = changeTicks[last];
+            dense[index] = lastEntity;
+            sparse[lastEntity] = index + 1;
+        }
+        clearData(last);
+        sparse[entityId] = 0;
+
+        presenceChanged(entityId);
+    }
+
+    /**
+     * Removes all entities and drops the dense arrays, so the data is allocated again by {@link #resizeData(int)} when the next entity is added.
+     * Used by subclasses that release their data storage.
+     */
+    protected final void clearStorage() {
+        while (size > 0)
+            resetEntity(dense[size - 1]);
+        dense = new int[0];
+        changeTicks = new long[0];
+    }
+
+    @Override
+    public final boolean isPresentOn(int entityId) {
+        return indexOf(entityId) != -1;
+    }
+}
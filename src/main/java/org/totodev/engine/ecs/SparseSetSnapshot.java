@@ -0,0 +1,63 @@
+package org.totodev.engine.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Base class for snapshots of {@link SparseSetComponent sparse-set components}. Stores a copy of the dense index of the component,
+ * so subclasses only have to copy their data arrays, which are indexed by {@link #indexOf(int)} just like in the component.
+ */
+public class SparseSetSnapshot {
+    private int[] sparse = new int[0];
+    private int[] dense = new int[0];
+    private int size = 0;
+
+    /**
+     * @return The number of entities the component was present on
+     */
+    public final int size() {
+        return size;
+    }
+
+    public final int entityAt(int index) {
+        return dense[index];
+    }
+
+    /**
+     * @return The dense index of this entity, or -1, if the component was not present on that entity
+     */
+    public final int indexOf(int entityId) {
+        if (entityId < 0 || entityId >= sparse.length) return -1;
+        return sparse[entityId] - 1;
+    }
+
+    public final boolean isPresentOn(int entityId) {
+        return indexOf(entityId) != -1;
+    }
+
+    final void copyIndex(int[] sparse, int[] dense, int size) {
+        this.sparse = copy(sparse, this.sparse, sparse.length);
+        // Entries behind the copied range could still point into the old dense array
+        if (this.sparse.length > sparse.length) Arrays.fill(this.sparse, sparse.length, this.sparse.length, 0);
+        this.dense = copy(dense, this.dense, size);
+        this.size = size;
+    }
+
+    //region Copy helpers
+    // Copy the first size values into target, reusing it if it is large enough. Used by components to fill their snapshots
+    public static int[] copy(int[] source, int[] target, int size) {
+        if (target.length < size) target = new int[Math.max(size, target.length * 2)];
+        System.arraycopy(source, 0, target, 0, size);
+        return target;
+    }
+    public static float[] copy(float[] source, float[] target, int size) {
+        if (target.length < size) target = new float[Math.max(size, target.length * 2)];
+        System.arraycopy(source, 0, target, 0, size);
+        return target;
+    }
+    public static <T> T[] copy(T[] source, T[] target, int size) {
+        if (target.length < size) target = Arrays.copyOf(target, Math.max(size, target.length * 2));
+        System.arraycopy(source, 0, target, 0, size);
+        return target;
+    }
+    //endregion
+}
@@ -1,91 +1,117 @@
 package org.totodev.engine.physics;
 
-import org.eclipse.collections.api.map.primitive.*;
-import org.eclipse.collections.impl.factory.primitive.*;
 import org.jetbrains.annotations.*;
 import org.joml.Vector2f;
-import org.totodev.engine.ecs.Component;
+import org.totodev.engine.ecs.SparseSetComponent;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 import org.totodev.engine.util.SerializationUtils;
 
 import java.util.Arrays;
 
-public class BoxCollider2d implements Component {
-    public MutableIntObjectMap<Vector2f> sizes = IntObjectMaps.mutable.empty();
-    public MutableIntObjectMap<Vector2f> offsets = IntObjectMaps.mutable.empty();
-    public MutableIntFloatMap restitutions = IntFloatMaps.mutable.empty();
-    public MutableIntIntMap layers = IntIntMaps.mutable.empty();
-    public MutableIntIntMap types = IntIntMaps.mutable.empty();
+public class BoxCollider2d extends SparseSetComponent {
+    private Vector2f[] sizes = new Vector2f[0];
+    private Vector2f[] offsets = new Vector2f[0];
+    private float[] restitutions = new float[0];
+    private int[] layers = new int[0];
+    private int[] types = new int[0];
 
     //region Size
     public Vector2f getSize(int entityId, @NotNull Vector2f out) {
-        Vector2f size = sizes.get(entityId);
-        if (size == null) return null;
-        return out.set(size);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(sizes[i]);
     }
 
     public void setSize(int entityId, @NotNull Vector2f size) {
-        sizes.put(entityId, size);
+        sizes[addEntity(entityId)].set(size);
     }
     public void setSize(int entityId, float x, float y) {
-        sizes.put(entityId, new Vector2f(x, y));
+        sizes[addEntity(entityId)].set(x, y);
     }
     //endregion
 
     //region Offset
     public Vector2f getOffset(int entityId, @NotNull Vector2f out) {
-        Vector2f offset = offsets.get(entityId);
-        if (offset == null) return null;
-        return out.set(offset);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(offsets[i]);
     }
 
     public void setOffset(int entityId, @NotNull Vector2f offset) {
-        offsets.put(entityId, offset);
+        offsets[addEntity(entityId)].set(offset);
     }
     public void setOffset(int entityId, float x, float y) {
-        offsets.put(entityId, new Vector2f(x, y));
+        offsets[addEntity(entityId)].set(x, y);
     }
     //endregion
 
     //region Restitution
     public float getRestitution(int entityId) {
-        return restitutions.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return restitutions[i];
     }
 
     public void setRestitution(int entityId, float restitution) {
-        restitutions.put(entityId, restitution);
+        restitutions[addEntity(entityId)] = restitution;
     }
     //endregion
 
     //region Layer
     public int getLayer(int entityId) {
-        return layers.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return layers[i];
     }
 
     public void setLayer(int entityId, int layer) {
-        layers.put(entityId, layer);
+        layers[addEntity(entityId)] = layer;
     }
     //endregion
 
     //region Type
     public int getType(int entityId) {
-        return types.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return types[i];
     }
 
     public void setType(int entityId, int type) {
-        types.put(entityId, type);
+        types[addEntity(entityId)] = type;
     }
     //endregion
 
+    //region Storage
     @Override
-    public void resetEntity(int entityId) {
-        sizes.remove(entityId);
-        offsets.remove(entityId);
-        restitutions.remove(entityId);
-        layers.remove(entityId);
-        types.remove(entityId);
+    protected void resizeData(int capacity) {
+        sizes = Arrays.copyOf(sizes, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        restitutions = Arrays.copyOf(restitutions, capacity);
+        layers = Arrays.copyOf(layers, capacity);
+        types = Arrays.copyOf(types, capacity);
     }
 
+    @Override
+    protected void moveData(int fromIndex, int toIndex) {
+        sizes[toIndex].set(sizes[fromIndex]);
+        offsets[toIndex].set(offsets[fromIndex]);
+        restitutions[toIndex] = restitutions[fromIndex];
+        layers[toIndex] = layers[fromIndex];
+        types[toIndex] = types[fromIndex];
+    }
+
+    @Override
+    protected void initData(int index) {
+        if (sizes[index] == null) sizes[index] = new Vector2f();
+        if (offsets[index] == null) offsets[index] = new Vector2f();
+        sizes[index].set(0, 0);
+        offsets[index].set(0, 0);
+        restitutions[index] = 0;
+        layers[index] = 0;
+        types[index] = 0;
+    }
+    //endregion
+
     @Override
     public void deserializeState(@NotNull ComponentDataModel data) {
         String[] splitValue = data.value.split("\\|");
@@ -101,19 +127,10 @@ public class BoxCollider2d implements Component {
     }
     @Override
     public @Nullable String serializeState(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        Vector2f size = sizes.get(entityId);
-        Vector2f offset = offsets.get(entityId);
-        float restitution = restitutions.get(entityId);
-        return SerializationUtils.serialize(size.x, size.y, offset.x, offset.y, restitution) + '|' + layers.get(entityId) + '|' + types.get(entityId);
-    }
-
-    @Override
-    public boolean isPresentOn(int entityId) {
-        return sizes.containsKey(entityId)
-                && offsets.containsKey(entityId)
-                && restitutions.containsKey(entityId)
-                && layers.containsKey(entityId)
-                && types.containsKey(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        Vector2f size = sizes[i];
+        Vector2f offset = offsets[i];
+        return SerializationUtils.serialize(size.x, size.y, offset.x, offset.y, restitutions[i]) + '|' + layers[i] + '|' + types[i];
     }
 }
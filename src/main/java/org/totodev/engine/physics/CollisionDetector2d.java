@@ -1,49 +1,135 @@
 package org.totodev.engine.physics;
 
-import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.api.set.primitive.MutableLongSet;
+import org.eclipse.collections.impl.factory.primitive.LongSets;
 import org.joml.Vector2f;
 import org.totodev.engine.core.components.Transform2d;
 import org.totodev.engine.core.systems.Updater;
 import org.totodev.engine.ecs.*;
 
+/**
+ * Finds all overlapping colliders on the same layer and reports them once per update as {@link Contacts2d} batches.
+ * Every overlapping pair is reported in both orders. A pair remembered from the last update tells whether a contact just started or ended. <br/>
+ * The contact events are {@link EventManager#setQueued queued} and delivered after PostUpdate on the update thread,
+ * so their subscribers can access any component and create or destroy entities, even if PostUpdate runs in parallel.
+ */
 public class CollisionDetector2d extends BaseSystem {
-    @CachedComponent
+    /**
+     * Called with the contacts that started in this update. The only argument is a {@link Contacts2d}.
+     */
+    public static final String EVENT_ENTER = "PhysEnter";
+    /**
+     * Called with all contacts of this update, including the ones that just started. The only argument is a {@link Contacts2d}.
+     */
+    public static final String EVENT_STAY = "PhysStay";
+    /**
+     * Called with the contacts of the last update that ended in this update, with the layers and types they had. The only argument is a {@link Contacts2d}.
+     */
+    public static final String EVENT_EXIT = "PhysExit";
+    private static final int ENTER_ID = EventRegistry.getId(EVENT_ENTER);
+    private static final int STAY_ID = EventRegistry.getId(EVENT_STAY);
+    private static final int EXIT_ID = EventRegistry.getId(EVENT_EXIT);
+
+    @CachedComponent(AccessMode.READ)
     private Transform2d transform;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private BoxCollider2d collider;
 
+    private Query toCheck;
+    // Reused for reading collider data without allocating
+    private final Vector2f offset = new Vector2f();
+    private final Vector2f size = new Vector2f();
+
+    // The contacts and pairs of this and the last update, swapped every update
+    private Contacts2d contacts = new Contacts2d(), lastContacts = new Contacts2d();
+    private MutableLongSet pairs = LongSets.mutable.empty(), lastPairs = LongSets.mutable.empty();
+    private final Contacts2d entered = new Contacts2d(), exited = new Contacts2d();
+
+    @Override
+    public void start(Scene scene) {
+        super.start(scene);
+        toCheck = scene.query(BoxCollider2d.class, Transform2d.class);
+        // Flushed in the order they are queued, so exit comes before enter and stay
+        scene.events.setQueued(EVENT_EXIT, new EventQueue.OfObject(4), Updater.EVENT_POST_UPDATE);
+        scene.events.setQueued(EVENT_ENTER, new EventQueue.OfObject(4), Updater.EVENT_POST_UPDATE);
+        scene.events.setQueued(EVENT_STAY, new EventQueue.OfObject(4), Updater.EVENT_POST_UPDATE);
+    }
+
+    @Override
+    public void stop(Scene scene) {
+        scene.events.setQueued(EVENT_EXIT, null, null);
+        scene.events.setQueued(EVENT_ENTER, null, null);
+        scene.events.setQueued(EVENT_STAY, null, null);
+        super.stop(scene);
+    }
+
     @EventSubscriber(Updater.EVENT_POST_UPDATE)
     public void update(float deltaTime) {
-        MutableIntList toCheck = getScene().getEntitiesByComponents(BoxCollider2d.class, Transform2d.class);
-        toCheck.forEach(e1 -> toCheck.forEach(e2 -> {
+        Contacts2d swappedContacts = lastContacts;
+        lastContacts = contacts;
+        contacts = swappedContacts;
+        MutableLongSet swappedPairs = lastPairs;
+        lastPairs = pairs;
+        pairs = swappedPairs;
+        contacts.clear();
+        pairs.clear();
+        entered.clear();
+        exited.clear();
+
+        for (int i = 0; i < toCheck.size(); i++) {
+            int e1 = toCheck.get(i);
             int layer = collider.getLayer(e1);
-            if (e1 == e2 || layer != collider.getLayer(e2)) return;
-            if (checkCollision(e1, e2)) getScene().events
-                    .invokeEvent("PhysStay", layer, e1, collider.getType(e1), e2, collider.getType(e2));
-        }));
+            int type1 = collider.getType(e1);
+            for (int j = 0; j < toCheck.size(); j++) {
+                int e2 = toCheck.get(j);
+                if (e1 == e2 || layer != collider.getLayer(e2) || !checkCollision(e1, e2)) continue;
+
+                int type2 = collider.getType(e2);
+                long key = Contacts2d.key(e1, e2);
+                contacts.add(layer, e1, type1, e2, type2);
+                pairs.add(key);
+                if (!lastPairs.contains(key)) entered.add(layer, e1, type1, e2, type2);
+            }
+        }
+
+        for (int i = 0; i < lastContacts.size(); i++) {
+            int e1 = lastContacts.getEntityA(i);
+            int e2 = lastContacts.getEntityB(i);
+            if (!pairs.contains(Contacts2d.key(e1, e2)))
+                exited.add(lastContacts.getLayer(i), e1, lastContacts.getTypeA(i), e2, lastContacts.getTypeB(i));
+        }
+
+        EventManager events = getScene().events;
+        if (!exited.isEmpty()) events.invokeEvent(EXIT_ID, exited);
+        if (!entered.isEmpty()) events.invokeEvent(ENTER_ID, entered);
+        if (!contacts.isEmpty()) events.invokeEvent(STAY_ID, contacts);
     }
 
     private boolean checkCollision(int entity1, int entity2) {
         // Adapted from https://developer.ibm.com/tutorials/wa-build2dphysicsengine
-        Vector2f pos = transform.getPosition(entity1, new Vector2f()).add(collider.getOffset(entity1, new Vector2f()));
-        Vector2f size = collider.getSize(entity1, new Vector2f());
+        collider.getOffset(entity1, offset);
+        collider.getSize(entity1, size);
+        float x = transform.getPositionX(entity1) + offset.x;
+        float y = transform.getPositionY(entity1) + offset.y;
         float width = size.x / 2;
         float height = size.y / 2;
 
-        float l1 = pos.x - width;
-        float t1 = pos.y + height;
-        float r1 = pos.x + width;
-        float b1 = pos.y - height;
+        float l1 = x - width;
+        float t1 = y + height;
+        float r1 = x + width;
+        float b1 = y - height;
 
-        pos = transform.getPosition(entity2, new Vector2f()).add(collider.getOffset(entity2, new Vector2f()));
-        size = collider.getSize(entity2, new Vector2f());
+        collider.getOffset(entity2, offset);
+        collider.getSize(entity2, size);
+        x = transform.getPositionX(entity2) + offset.x;
+        y = transform.getPositionY(entity2) + offset.y;
         width = size.x / 2;
         height = size.y / 2;
 
-        float l2 = pos.x - width;
-        float t2 = pos.y + height;
-        float r2 = pos.x + width;
-        float b2 = pos.y - height;
+        float l2 = x - width;
+        float t2 = y + height;
+        float r2 = x + width;
+        float b2 = y - height;
 
         return !(b1 > t2 || b2 > t1 || r1 < l2 || l1 > r2);
     }
@@ -11,27 +11,41 @@ public class CollisionSolver2d extends BaseSystem {
 
     @CachedComponent
     private Transform2d transform;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private BoxCollider2d collider;
     @CachedComponent
     private Velocity2d velocity;
 
-    @EventSubscriber("PhysStay")
-    public void solveCollision(int layer, int entity1, int type1, int entity2, int type2) {
-        if (type1 != COLL_TYPE_SOLVE_DYNAMIC || type2 != COLL_TYPE_SOLVE_KINETIC) return;
+    // Reused for reading collider data without allocating
+    private final Vector2f offset1 = new Vector2f(), offset2 = new Vector2f();
+    private final Vector2f size1 = new Vector2f(), size2 = new Vector2f();
+
+    @EventSubscriber(CollisionDetector2d.EVENT_STAY)
+    public void solveCollisions(Contacts2d contacts) {
+        int[] entitiesA = contacts.getEntitiesA(), typesA = contacts.getTypesA();
+        int[] entitiesB = contacts.getEntitiesB(), typesB = contacts.getTypesB();
+        for (int i = 0; i < contacts.size(); i++) {
+            if (typesA[i] == COLL_TYPE_SOLVE_DYNAMIC && typesB[i] == COLL_TYPE_SOLVE_KINETIC)
+                solveCollision(entitiesA[i], entitiesB[i]);
+        }
+    }
 
-        // Adapted from https://developer.ibm.com/tutorials/wa-build2dphysicsengine
-        Vector2f pos1 = transform.getPosition(entity1, new Vector2f()).add(collider.getOffset(entity1, new Vector2f()));
-        Vector2f pos2 = transform.getPosition(entity2, new Vector2f()).add(collider.getOffset(entity2, new Vector2f()));
+    private void solveCollision(int entity1, int entity2) {
 
-        Vector2f size1 = collider.getSize(entity1, new Vector2f());
-        Vector2f size2 = collider.getSize(entity2, new Vector2f());
+        // Adapted from https://developer.ibm.com/tutorials/wa-build2dphysicsengine
+        collider.getOffset(entity1, offset1);
+        collider.getOffset(entity2, offset2);
+        collider.getSize(entity1, size1);
+        collider.getSize(entity2, size2);
 
-        Vector2f vel1 = velocity.getVelocity(entity1, new Vector2f());
-        Vector2f vel2 = velocity.getVelocity(entity2, new Vector2f());
+        float pos2X = transform.getPositionX(entity2);
+        float pos2Y = transform.getPositionY(entity2);
+        float dX = (pos2X + offset2.x - transform.getPositionX(entity1) - offset1.x) / (size2.x / 2);
+        float dY = (pos2Y + offset2.y - transform.getPositionY(entity1) - offset1.y) / (size2.y / 2);
 
-        float dX = (pos2.x - pos1.x) / (size2.x / 2);
-        float dY = (pos2.y - pos1.y) / (size2.y / 2);
+        float velX = velocity.getVelocityX(entity1);
+        float velY = velocity.getVelocityY(entity1);
+        float restitution = collider.getRestitution(entity1);
 
         float absDX = Math.abs(dX);
         float absDY = Math.abs(dY);
@@ -42,35 +56,31 @@ public class CollisionSolver2d extends BaseSystem {
         if (Math.abs(absDX - absDY) < .1) {
             if (dX < 0) {
                 // If the object is approaching from positive X
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).add((size1.x + size2.x) / 2, 0));
+                transform.setPosition(entity1, pos2X + (size1.x + size2.x) / 2, pos2Y);
             } else {
                 // If the object is approaching from negative X
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).sub((size1.x + size2.x) / 2, 0));
+                transform.setPosition(entity1, pos2X - (size1.x + size2.x) / 2, pos2Y);
             }
 
             if (dY < 0) {
                 // If the object is approaching from positive Y
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).add(0, (size1.y + size2.y) / 2));
+                transform.setPosition(entity1, pos2X, pos2Y + (size1.y + size2.y) / 2);
             } else {
                 // If the object is approaching from negative Y
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).sub(0, (size1.y + size2.y) / 2));
+                transform.setPosition(entity1, pos2X, pos2Y - (size1.y + size2.y) / 2);
             }
 
             // Randomly select a x/y direction to reflect velocity on
             if (Math.random() < .5) {
-
                 // Reflect the velocity at a reduced rate
-                velocity.setVelocity(entity1, vel1.mul(-collider.getRestitution(entity1), 1));
+                velX *= -restitution;
 
                 // If the object's velocity is nearing 0, set it to 0
-                // STICKY_THRESHOLD is set to .0004
-                if (Math.abs(vel1.x) < STICKY_THRESHOLD)
-                    velocity.setVelocity(entity1, 0, vel1.y);
+                if (Math.abs(velX) < STICKY_THRESHOLD) velX = 0;
             } else {
-                velocity.setVelocity(entity1, vel1.mul(1, -collider.getRestitution(entity1)));
+                velY *= -restitution;
 
-                if (Math.abs(vel1.y) < STICKY_THRESHOLD)
-                    velocity.setVelocity(entity1, vel1.x, 0);
+                if (Math.abs(velY) < STICKY_THRESHOLD) velY = 0;
             }
 
         } else if (absDX > absDY) {
@@ -78,34 +88,34 @@ public class CollisionSolver2d extends BaseSystem {
 
             if (dX < 0) {
                 // If the object is approaching from positive X
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).add((size1.x + size2.x) / 2, 0));
+                transform.setPosition(entity1, pos2X + (size1.x + size2.x) / 2, pos2Y);
             } else {
                 // If the object is approaching from negative X
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).sub((size1.x + size2.x) / 2, 0));
+                transform.setPosition(entity1, pos2X - (size1.x + size2.x) / 2, pos2Y);
             }
 
             // Velocity component
-            velocity.setVelocity(entity1, vel1.mul(-collider.getRestitution(entity1), 1));
+            velX *= -restitution;
 
-            if (Math.abs(vel1.x) < STICKY_THRESHOLD)
-                velocity.setVelocity(entity1, 0, vel1.y);
+            if (Math.abs(velX) < STICKY_THRESHOLD) velX = 0;
 
         } else {
             // If the object is approaching from the top or bottom
 
             if (dY < 0) {
                 // If the object is approaching from positive Y
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).add(0, (size1.y + size2.y) / 2));
+                transform.setPosition(entity1, pos2X, pos2Y + (size1.y + size2.y) / 2);
             } else {
                 // If the object is approaching from negative Y
-                transform.setPosition(entity1, transform.getPosition(entity2, new Vector2f()).sub(0, (size1.y + size2.y) / 2));
+                transform.setPosition(entity1, pos2X, pos2Y - (size1.y + size2.y) / 2);
             }
 
             // Velocity component
-            velocity.setVelocity(entity1, vel1.mul(1, -collider.getRestitution(entity1)));
+            velY *= -restitution;
 
-            if (Math.abs(vel1.y) < STICKY_THRESHOLD)
-                velocity.setVelocity(entity1, vel1.x, 0);
+            if (Math.abs(velY) < STICKY_THRESHOLD) velY = 0;
         }
+
+        velocity.setVelocity(entity1, velX, velY);
     }
 }
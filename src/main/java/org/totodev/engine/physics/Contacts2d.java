@@ -0,0 +1,110 @@
+package org.totodev.engine.physics;
+
+import java.util.Arrays;
+
+/**
+ * A batch of contacts between two colliders, delivered once per update by the events of {@link CollisionDetector2d}.
+ * Contact i is stored at index i of every array, only the first {@link #size()} entries are valid. <br/>
+ * The batch is reused by the detector and only valid during the event.
+ */
+public final class Contacts2d {
+    private int size = 0;
+    private int[] layers = new int[16];
+    private int[] entitiesA = new int[16];
+    private int[] typesA = new int[16];
+    private int[] entitiesB = new int[16];
+    private int[] typesB = new int[16];
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //region Getters
+    public int getLayer(int index) {
+        return layers[index];
+    }
+
+    public int getEntityA(int index) {
+        return entitiesA[index];
+    }
+
+    public int getTypeA(int index) {
+        return typesA[index];
+    }
+
+    public int getEntityB(int index) {
+        return entitiesB[index];
+    }
+
+    public int getTypeB(int index) {
+        return typesB[index];
+    }
+
+    /**
+     * @return The layers of all contacts. Must not be modified.
+     */
+    public int[] getLayers() {
+        return layers;
+    }
+
+    /**
+     * @return The first entity of all contacts. Must not be modified.
+     */
+    public int[] getEntitiesA() {
+        return entitiesA;
+    }
+
+    /**
+     * @return The collision types of the first entities. Must not be modified.
+     */
+    public int[] getTypesA() {
+        return typesA;
+    }
+
+    /**
+     * @return The second entity of all contacts. Must not be modified.
+     */
+    public int[] getEntitiesB() {
+        return entitiesB;
+    }
+
+    /**
+     * @return The collision types of the second entities. Must not be modified.
+     */
+    public int[] getTypesB() {
+        return typesB;
+    }
+    //endregion
+
+    void add(int layer, int entityA, int typeA, int entityB, int typeB) {
+        if (size == layers.length) {
+            int capacity = size * 2;
+            layers = Arrays.copyOf(layers, capacity);
+            entitiesA = Arrays.copyOf(entitiesA, capacity);
+            typesA = Arrays.copyOf(typesA, capacity);
+            entitiesB = Arrays.copyOf(entitiesB, capacity);
+            typesB = Arrays.copyOf(typesB, capacity);
+        }
+        layers[size] = layer;
+        entitiesA[size] = entityA;
+        typesA[size] = typeA;
+        entitiesB[size] = entityB;
+        typesB[size] = typeB;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return A key that identifies the ordered pair of entities of a contact
+     */
+    static long key(int entityA, int entityB) {
+        return ((long) entityA << 32) | (entityB & 0xFFFFFFFFL);
+    }
+}
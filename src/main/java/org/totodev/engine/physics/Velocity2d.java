@@ -1,64 +1,116 @@
 package org.totodev.engine.physics;
 
-import org.eclipse.collections.api.map.primitive.*;
-import org.eclipse.collections.impl.factory.primitive.*;
 import org.jetbrains.annotations.*;
 import org.joml.Vector2f;
-import org.totodev.engine.ecs.Component;
+import org.totodev.engine.ecs.SparseSetComponent;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 import org.totodev.engine.util.SerializationUtils;
 
-public class Velocity2d implements Component {
-    private final MutableIntObjectMap<Vector2f> velocities = IntObjectMaps.mutable.empty();
-    private final MutableIntFloatMap rotVelocities = IntFloatMaps.mutable.empty();
+import java.util.Arrays;
+
+/**
+ * Linear and angular velocity of 2d entities, stored in primitive arrays like {@link org.totodev.engine.core.components.Transform2d}.
+ */
+public class Velocity2d extends SparseSetComponent {
+    private float[] vx = new float[0];
+    private float[] vy = new float[0];
+    private float[] rotVel = new float[0];
 
     //region Velocity
     public Vector2f getVelocity(int entityId, @NotNull Vector2f out) {
-        Vector2f vel = velocities.get(entityId);
-        if (vel == null) return null;
-        return out.set(vel);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(vx[i], vy[i]);
+    }
+    public float getVelocityX(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return vx[i];
+    }
+    public float getVelocityY(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return vy[i];
     }
 
     public void setVelocity(int entityId, @NotNull Vector2f velocity) {
-        velocities.put(entityId, velocity);
+        setVelocity(entityId, velocity.x, velocity.y);
     }
     public void setVelocity(int entityId, float x, float y) {
-        velocities.put(entityId, new Vector2f(x, y));
+        int i = addEntity(entityId);
+        vx[i] = x;
+        vy[i] = y;
     }
 
     public void changeVelocity(int entityId, @NotNull Vector2f velChange) {
-        Vector2f vel = velocities.get(entityId);
-        if (vel == null) return;
-        vel.add(velChange);
+        changeVelocity(entityId, velChange.x, velChange.y);
     }
     public void changeVelocity(int entityId, float x, float y) {
-        Vector2f vel = velocities.get(entityId);
-        if (vel == null) return;
-        vel.add(x, y);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        vx[i] += x;
+        vy[i] += y;
+        markChangedAt(i);
     }
     //endregion
 
     //region RotVelocity
     public float getRotVelocity(int entityId) {
-        return rotVelocities.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return 0;
+        return rotVel[i];
     }
 
     public void setRotVelocity(int entityId, float rotVelocity) {
-        rotVelocities.put(entityId, rotVelocity);
+        rotVel[addEntity(entityId)] = rotVelocity;
     }
 
     public void changeRotVelocity(int entityId, float rotVelChange) {
-        if (!rotVelocities.containsKey(entityId)) return;
-        rotVelocities.addToValue(entityId, rotVelChange);
+        int i = indexOf(entityId);
+        if (i == -1) return;
+        rotVel[i] += rotVelChange;
+        markChangedAt(i);
     }
     //endregion
 
+    //region Bulk access
+    // The returned arrays are indexed by indexOf(entityId) and valid up to size().
+    // They are replaced when the component grows, so they must be retrieved again after adding entities.
+    // Call markChangedAt(index) after writing to them.
+    public float[] getVelocitiesX() {
+        return vx;
+    }
+    public float[] getVelocitiesY() {
+        return vy;
+    }
+    public float[] getRotVelocities() {
+        return rotVel;
+    }
+    //endregion
+
+    //region Storage
+    @Override
+    protected void resizeData(int capacity) {
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        rotVel = Arrays.copyOf(rotVel, capacity);
+    }
+
     @Override
-    public void resetEntity(int entityId) {
-        velocities.remove(entityId);
-        rotVelocities.remove(entityId);
+    protected void moveData(int fromIndex, int toIndex) {
+        vx[toIndex] = vx[fromIndex];
+        vy[toIndex] = vy[fromIndex];
+        rotVel[toIndex] = rotVel[fromIndex];
     }
 
+    @Override
+    protected void initData(int index) {
+        vx[index] = 0;
+        vy[index] = 0;
+        rotVel[index] = 0;
+    }
+    //endregion
+
     @Override
     public void deserializeState(@NotNull ComponentDataModel data) {
         float[] values = SerializationUtils.deserialize(data.value);
@@ -67,13 +119,8 @@ public class Velocity2d implements Component {
     }
     @Override
     public @Nullable String serializeState(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        Vector2f vel = velocities.get(entityId);
-        return SerializationUtils.serialize(vel.x, vel.y, rotVelocities.get(entityId));
-    }
-
-    @Override
-    public boolean isPresentOn(int entityId) {
-        return velocities.containsKey(entityId) && rotVelocities.containsKey(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return SerializationUtils.serialize(vx[i], vy[i], rotVel[i]);
     }
 }
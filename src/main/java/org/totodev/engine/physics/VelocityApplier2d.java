@@ -1,6 +1,5 @@
 package org.totodev.engine.physics;
 
-import org.joml.Vector2f;
 import org.totodev.engine.core.components.Transform2d;
 import org.totodev.engine.core.systems.Updater;
 import org.totodev.engine.ecs.*;
@@ -8,14 +7,33 @@ import org.totodev.engine.ecs.*;
 public class VelocityApplier2d extends BaseSystem {
     @CachedComponent
     private Transform2d transform;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private Velocity2d velocity;
 
+    private Query moving;
+
+    @Override
+    public void start(Scene scene) {
+        super.start(scene);
+        moving = scene.query(Velocity2d.class, Transform2d.class);
+    }
+
     @EventSubscriber(Updater.EVENT_POST_UPDATE)
     public void update(float deltaTime) {
-        getScene().getEntitiesByComponents(Velocity2d.class, Transform2d.class).forEach(e -> {
-            transform.move(e, velocity.getVelocity(e, new Vector2f()).mul(deltaTime));
-            transform.rotate(e, velocity.getRotVelocity(e) * deltaTime);
+        float[] x = transform.getPositionsX(), y = transform.getPositionsY(), rot = transform.getRotations();
+        float[] vx = velocity.getVelocitiesX(), vy = velocity.getVelocitiesY(), rotVel = velocity.getRotVelocities();
+
+        getScene().forEachChunk(moving, (entities, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int e = entities[i];
+                int t = transform.indexOf(e);
+                int v = velocity.indexOf(e);
+                if (vx[v] == 0 && vy[v] == 0 && rotVel[v] == 0) continue;
+                x[t] += vx[v] * deltaTime;
+                y[t] += vy[v] * deltaTime;
+                rot[t] += rotVel[v] * deltaTime;
+                transform.markChangedAt(t);
+            }
         });
     }
 }
@@ -1,53 +1,100 @@
 package org.totodev.engine.rendering;
 
-import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
-import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
 import org.jetbrains.annotations.*;
 import org.joml.Vector2f;
-import org.totodev.engine.ecs.Component;
+import org.totodev.engine.ecs.*;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 import org.totodev.engine.util.SerializationUtils;
 
-public class Camera2d implements Component {
-    private final MutableIntObjectMap<Vector2f> sizes = IntObjectMaps.mutable.empty();
-    private final MutableIntObjectMap<Vector2f> offsets = IntObjectMaps.mutable.empty();
+import java.util.Arrays;
+
+public class Camera2d extends SparseSetComponent implements Snapshottable<Camera2d.Snapshot> {
+    public static final class Snapshot extends SparseSetSnapshot {
+        // Size x, size y, offset x, offset y of every camera, indexed by indexOf(entityId) * 4
+        private float[] values = new float[0];
+
+        public Vector2f getSize(int entityId, @NotNull Vector2f out) {
+            int i = indexOf(entityId);
+            if (i == -1) return null;
+            return out.set(values[i * 4], values[i * 4 + 1]);
+        }
+
+        public Vector2f getOffset(int entityId, @NotNull Vector2f out) {
+            int i = indexOf(entityId);
+            if (i == -1) return null;
+            return out.set(values[i * 4 + 2], values[i * 4 + 3]);
+        }
+    }
+
+    private Vector2f[] sizes = new Vector2f[0];
+    private Vector2f[] offsets = new Vector2f[0];
 
     //region Size
     public Vector2f getSize(int entityId, @NotNull Vector2f out) {
-        Vector2f size = sizes.get(entityId);
-        if (size == null) return null;
-        return out.set(size);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(sizes[i]);
     }
 
     public void setSize(int entityId, @NotNull Vector2f size) {
-        sizes.put(entityId, size);
+        sizes[addEntity(entityId)].set(size);
     }
     public void setSize(int entityId, float x, float y) {
-        sizes.put(entityId, new Vector2f(x, y));
+        sizes[addEntity(entityId)].set(x, y);
     }
     //endregion
 
     //region Offset
     public Vector2f getOffset(int entityId, @NotNull Vector2f out) {
-        Vector2f offset = offsets.get(entityId);
-        if (offset == null) return null;
-        return out.set(offset);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return out.set(offsets[i]);
     }
 
     public void setOffset(int entityId, @NotNull Vector2f offset) {
-        offsets.put(entityId, offset);
+        offsets[addEntity(entityId)].set(offset);
     }
     public void setOffset(int entityId, float x, float y) {
-        offsets.put(entityId, new Vector2f(x, y));
+        offsets[addEntity(entityId)].set(x, y);
     }
     //endregion
 
     @Override
-    public void resetEntity(int entityId) {
-        sizes.remove(entityId);
-        offsets.remove(entityId);
+    public @NotNull Snapshot snapshot(@Nullable Snapshot reuse) {
+        Snapshot snapshot = reuse == null ? new Snapshot() : reuse;
+        copyIndexTo(snapshot);
+        if (snapshot.values.length < size() * 4) snapshot.values = new float[Math.max(size() * 4, snapshot.values.length * 2)];
+        for (int i = 0; i < size(); i++) {
+            snapshot.values[i * 4] = sizes[i].x;
+            snapshot.values[i * 4 + 1] = sizes[i].y;
+            snapshot.values[i * 4 + 2] = offsets[i].x;
+            snapshot.values[i * 4 + 3] = offsets[i].y;
+        }
+        return snapshot;
+    }
+
+    //region Storage
+    @Override
+    protected void resizeData(int capacity) {
+        sizes = Arrays.copyOf(sizes, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+    }
+
+    @Override
+    protected void moveData(int fromIndex, int toIndex) {
+        sizes[toIndex].set(sizes[fromIndex]);
+        offsets[toIndex].set(offsets[fromIndex]);
     }
 
+    @Override
+    protected void initData(int index) {
+        if (sizes[index] == null) sizes[index] = new Vector2f();
+        if (offsets[index] == null) offsets[index] = new Vector2f();
+        sizes[index].set(0, 0);
+        offsets[index].set(0, 0);
+    }
+    //endregion
+
     @Override
     public void deserializeState(@NotNull ComponentDataModel data) {
         float[] values = SerializationUtils.deserialize(data.value);
@@ -56,14 +103,10 @@ public class Camera2d implements Component {
     }
     @Override
     public @Nullable String serializeState(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        Vector2f size = sizes.get(entityId);
-        Vector2f offset = offsets.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        Vector2f size = sizes[i];
+        Vector2f offset = offsets[i];
         return SerializationUtils.serialize(size.x, size.y, offset.x, offset.y);
     }
-
-    @Override
-    public boolean isPresentOn(int entityId) {
-        return sizes.containsKey(entityId) && offsets.containsKey(entityId);
-    }
 }
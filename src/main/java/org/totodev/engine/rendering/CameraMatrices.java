@@ -30,6 +30,19 @@ public class CameraMatrices implements BufferWritable {
         );
     }
 
+    public static CameraMatrices fromCamera(Camera2d.Snapshot camera, Transform2d.Snapshot transform, int entityId) {
+        Vector2f size = camera.getSize(entityId, new Vector2f());
+
+        int t = transform.indexOf(entityId);
+        Vector2f pos = new Vector2f(transform.getPositionsX()[t], transform.getPositionsY()[t]).add(camera.getOffset(entityId, new Vector2f()));
+        float rot = transform.getRotations()[t];
+
+        return new CameraMatrices(
+                new Matrix4f().translationRotateScaleInvert(new Vector3f(pos.x, -pos.y, 0), new Quaternionf().rotateZ(rot), new Vector3f(transform.getScalesX()[t], transform.getScalesY()[t], 1)),
+                new Matrix4f().scale(1.0f / size.x, 1.0f / size.y, 1)
+        );
+    }
+
     @Override
     public int bytes() {
         return BYTES;
@@ -1,8 +1,17 @@
 package org.totodev.engine.rendering;
 
-import org.totodev.engine.ecs.GlobalComponent;
+import org.jetbrains.annotations.*;
+import org.totodev.engine.ecs.*;
+
+public class PixelScale implements GlobalComponent, Snapshottable<PixelScale.Snapshot> {
+    public static final class Snapshot {
+        private int pixelsPerUnit;
+
+        public int getPixelsPerUnit() {
+            return pixelsPerUnit;
+        }
+    }
 
-public class PixelScale implements GlobalComponent {
     private int pixelsPerUnit;
 
     public int getPixelsPerUnit() {
@@ -12,6 +21,13 @@ public class PixelScale implements GlobalComponent {
         this.pixelsPerUnit = pixelsPerUnit;
     }
 
+    @Override
+    public @NotNull Snapshot snapshot(@Nullable Snapshot reuse) {
+        Snapshot snapshot = reuse == null ? new Snapshot() : reuse;
+        snapshot.pixelsPerUnit = pixelsPerUnit;
+        return snapshot;
+    }
+
     @Override
     public String serializeState() {
         return Integer.toString(pixelsPerUnit);
@@ -2,44 +2,56 @@ package org.totodev.engine.rendering;
 
 import org.eclipse.collections.api.factory.Lists;
 import org.eclipse.collections.api.list.MutableList;
-import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.impl.factory.primitive.LongLists;
 import org.joml.*;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.*;
 import org.totodev.engine.core.*;
-import org.totodev.engine.core.components.Transform2d;
+import org.totodev.engine.core.components.*;
 import org.totodev.engine.core.systems.Updater;
 import org.totodev.engine.ecs.*;
 import org.totodev.engine.rendering.vulkan.*;
-import org.totodev.engine.resources.image.ImageProvider;
+import org.totodev.engine.resources.image.*;
 import org.totodev.engine.util.BufferWritable;
+import org.totodev.engine.util.logging.*;
 
 import java.nio.*;
+import java.util.Arrays;
+import java.util.concurrent.*;
 
 import static org.lwjgl.system.MemoryStack.stackPush;
 import static org.lwjgl.vulkan.KHRSwapchain.*;
 import static org.lwjgl.vulkan.VK10.*;
 
+@RequiresGraphics
 public class Renderer2d extends BaseSystem {
     public record FrameData(VkBufferHelper.VkBuffer instanceBuffer, long descriptorSet, int instanceCount) {
     }
 
     @CachedComponent
     private VulkanObjects vulkanObjects;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private Transform2d transform;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
+    private WorldTransform2d worldTransform;
+    @CachedComponent(AccessMode.READ)
     private Camera2d camera;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private Sprite2d sprite2d;
-    @CachedComponent
+    @CachedComponent(AccessMode.READ)
     private PixelScale pixelScale;
 
+    private Query sprites;
+    private Query cameras;
+
     @Override
     public void start(Scene scene) {
         super.start(scene);
 
+        sprites = scene.query(Sprite2d.class);
+        cameras = scene.query(Camera2d.class);
+        instances = new SpriteInstances2d();
+
         if (!getScene().hasGlobalComponent(VulkanObjects.class))
             getScene().addGlobalComponent(new VulkanObjects());
 
@@ -75,16 +87,269 @@ public class Renderer2d extends BaseSystem {
 
         vulkanObjects.descriptorPool = VkDescriptorHelper.createDescriptorPool(Engine.getLogicalDevice(), imageCount,
                 new VkDescriptorHelper.DescriptorPoolSize(VK_DESCRIPTOR_TYPE_COMBINED_IMAGE_SAMPLER, 128 * imageCount));
+
+        if (pipelined) startRenderThread(scene);
+    }
+
+    @Override
+    public void stop(Scene scene) {
+        // The render thread still uses the cached components, which are cleared by super.stop
+        stopRenderThread(scene);
+        super.stop(scene);
+        instances.free();
+        instances = null;
+        modelMatrixTicks = new long[0];
+    }
+
+    //region Pipelining
+    private boolean pipelined = false;
+    private int maxQueuedFrames = 1;
+    // Snapshots handed off by the update thread that were not drawn yet, only used while pipelined
+    private BlockingQueue<SceneSnapshot> frames;
+    private volatile Thread renderThread;
+    // The components the render thread tracks in the snapshots that were not tracked before, untracked again when it stops
+    private MutableList<Class<? extends Snapshottable<?>>> addedSnapshots = Lists.mutable.empty();
+
+    /**
+     * Draws the frames on a separate render thread from the published {@link SceneSnapshot snapshots} instead of at the end of every update,
+     * so the next update runs while the last one is drawn. The renderer tracks the components it needs in the snapshots itself.
+     * Takes effect the next time the renderer is started.
+     * @param pipelined True to draw on a separate render thread, false to draw at the end of every update
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Limits how many updates the render thread may lag behind while pipelined. Once that many snapshots wait to be drawn,
+     * publishing the next one blocks the update thread, so the latency between an update and its frame stays bounded.
+     * Takes effect the next time the renderer is started.
+     * @param maxQueuedFrames The number of snapshots that may wait to be drawn, 1 by default
+     */
+    public void setMaxQueuedFrames(int maxQueuedFrames) {
+        if (maxQueuedFrames < 1) throw new IllegalArgumentException("At least one frame must be queued, was " + maxQueuedFrames);
+        this.maxQueuedFrames = maxQueuedFrames;
+    }
+    public int getMaxQueuedFrames() {
+        return maxQueuedFrames;
+    }
+
+    private void startRenderThread(Scene scene) {
+        addedSnapshots = Lists.mutable.<Class<? extends Snapshottable<?>>>of(Transform2d.class, WorldTransform2d.class, Sprite2d.class, Camera2d.class, PixelScale.class)
+                .reject(scene.snapshots::isTracked);
+        addedSnapshots.forEach(scene.snapshots::track);
+
+        frames = new ArrayBlockingQueue<>(maxQueuedFrames);
+        Thread thread = new Thread(this::renderLoop, "Renderer2d");
+        thread.setDaemon(true);
+        renderThread = thread;
+        thread.start();
+    }
+
+    private void stopRenderThread(Scene scene) {
+        Thread thread = renderThread;
+        if (thread == null) return;
+        renderThread = null;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        SceneSnapshot snapshot;
+        while ((snapshot = frames.poll()) != null)
+            snapshot.close();
+
+        addedSnapshots.forEach(scene.snapshots::untrack);
+        addedSnapshots = Lists.mutable.empty();
+    }
+
+    // Hands the snapshot of the finished update to the render thread
+    @EventSubscriber(CoreEvents.SNAPSHOT_PUBLISHED)
+    public void queueFrame() {
+        if (renderThread == null) return;
+        SceneSnapshot snapshot = getScene().snapshots.acquire();
+        if (snapshot == null) return;
+
+        try {
+            // Waits while the render thread lags behind, but gives up once it was stopped
+            while (!frames.offer(snapshot, 10, TimeUnit.MILLISECONDS)) {
+                if (renderThread == null) {
+                    snapshot.close();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            snapshot.close();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void renderLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (SceneSnapshot snapshot = frames.take()) {
+                drawSnapshot(snapshot);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                Logger.log(LogLevel.ERROR, "Renderer2d", "Failed to draw frame [" + e + "]");
+            }
+        }
     }
+    //endregion
 
     private int lastImageIndex = 2;
     private FrameData lastFrameData;
 
-    @EventSubscriber(Updater.EVENT_POST_UPDATE)
+    // Instance data of the last frame, only rewritten where the transforms changed
+    private SpriteInstances2d instances;
+    // The first tick after the model matrix of every entity was built, or 0, if it has to be built
+    private long[] modelMatrixTicks = new long[0];
+    // Reused for every sprite when building the instance data
+    private final Matrix4f modelMatrix = new Matrix4f();
+    private final Quaternionf rotation = new Quaternionf();
+
+    /**
+     * Adds instances for new sprites and removes the instances of entities that no longer have a sprite.
+     */
+    private void syncInstances(Query entities) {
+        for (int i = instances.size() - 1; i >= 0; i--) {
+            int e = instances.entityAt(i);
+            if (!entities.contains(e)) instances.resetEntity(e);
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            int e = entities.get(i);
+            if (instances.isPresentOn(e)) continue;
+            instances.add(e);
+            if (e >= modelMatrixTicks.length) modelMatrixTicks = Arrays.copyOf(modelMatrixTicks, Math.max(modelMatrixTicks.length * 2, e + 1));
+            modelMatrixTicks[e] = 0;
+        }
+    }
+
+    private void syncInstances(Sprite2d.Snapshot sprites) {
+        for (int i = instances.size() - 1; i >= 0; i--) {
+            int e = instances.entityAt(i);
+            if (!sprites.isPresentOn(e)) instances.resetEntity(e);
+        }
+
+        for (int i = 0; i < sprites.size(); i++) {
+            int e = sprites.entityAt(i);
+            if (!instances.isPresentOn(e)) instances.add(e);
+        }
+    }
+
+    // Runs after everything else, especially the TransformPropagator2d
+    @EventSubscriber(value = Updater.EVENT_POST_UPDATE, priority = -1000)
     public void drawFrame(float deltaTime) {
-        IntList entities = getScene().getEntitiesByComponents(Sprite2d.class);
-        if (entities.size() == 0) return;
+        Query entities = sprites;
+        if (renderThread != null || entities.isEmpty()) return;
+
+        //region Build frame data
+        MutableList<ImageProvider> images = Lists.mutable.empty();
+        syncInstances(entities);
+        ByteBuffer instanceData = instances.getData();
+        float[] positionsX = transform.getPositionsX(), positionsY = transform.getPositionsY();
+        float[] rotations = transform.getRotations();
+        float[] scalesX = transform.getScalesX(), scalesY = transform.getScalesY();
+        float pixelsPerUnit = pixelScale.getPixelsPerUnit();
+        // Later changes in this update, like played back commands or update groups, get a newer tick than the built matrices,
+        // so only sprites changed after this frame are rebuilt in the next one
+        long builtInTick = getScene().advanceChangeTick();
+
+        for (int i = 0; i < instances.size(); i++) {
+            int e = instances.entityAt(i);
+            int offset = i * InstanceData.BYTES;
+            writeSprite(instanceData, offset, sprite2d.getSprite(e), images, pixelsPerUnit);
+
+            long builtTick = modelMatrixTicks[e];
+            // Entities in a hierarchy use their world matrix, if the TransformPropagator2d computed one
+            if (worldTransform != null && worldTransform.isComputed(e)) {
+                if (builtTick == 0 || worldTransform.getChangeTick(e) >= builtTick) {
+                    writeWorldMatrix(instanceData, offset, worldTransform.getMatrices(), e);
+                    modelMatrixTicks[e] = builtInTick;
+                }
+            } else if (builtTick == 0 || transform.changedSince(e, builtTick)) {
+                int t = transform.indexOf(e);
+                writeLocalMatrix(instanceData, offset, positionsX[t], positionsY[t], rotations[t], scalesX[t], scalesY[t]);
+                modelMatrixTicks[e] = builtInTick;
+            }
+        }
+        //endregion
+
+        submitFrame(images, CameraMatrices.fromCamera(camera, transform, cameras.getFirst()));
+    }
 
+    /**
+     * Draws a frame on the render thread. The snapshots carry no change ticks, so all model matrices are rebuilt,
+     * which runs in parallel to the next update instead of delaying it.
+     */
+    private void drawSnapshot(SceneSnapshot snapshot) {
+        Sprite2d.Snapshot sprites = snapshot.get(Sprite2d.class);
+        Transform2d.Snapshot transforms = snapshot.get(Transform2d.class);
+        WorldTransform2d.Snapshot worldTransforms = snapshot.get(WorldTransform2d.class);
+        Camera2d.Snapshot cameras = snapshot.get(Camera2d.class);
+        PixelScale.Snapshot scale = snapshot.get(PixelScale.class);
+        if (sprites == null || sprites.size() == 0 || transforms == null || cameras == null || cameras.size() == 0 || scale == null) return;
+
+        MutableList<ImageProvider> images = Lists.mutable.empty();
+        syncInstances(sprites);
+        ByteBuffer instanceData = instances.getData();
+        float[] positionsX = transforms.getPositionsX(), positionsY = transforms.getPositionsY();
+        float[] rotations = transforms.getRotations();
+        float[] scalesX = transforms.getScalesX(), scalesY = transforms.getScalesY();
+
+        for (int i = 0; i < instances.size(); i++) {
+            int e = instances.entityAt(i);
+            int offset = i * InstanceData.BYTES;
+            writeSprite(instanceData, offset, sprites.getSprite(e), images, scale.getPixelsPerUnit());
+
+            if (worldTransforms != null && worldTransforms.isComputed(e)) {
+                writeWorldMatrix(instanceData, offset, worldTransforms.getMatrices(), e);
+            } else {
+                int t = transforms.indexOf(e);
+                writeLocalMatrix(instanceData, offset, positionsX[t], positionsY[t], rotations[t], scalesX[t], scalesY[t]);
+            }
+        }
+
+        submitFrame(images, CameraMatrices.fromCamera(cameras, transforms, cameras.entityAt(0)));
+    }
+
+    //region Instance data
+    private static void writeSprite(ByteBuffer instanceData, int offset, ImageResource image, MutableList<ImageProvider> images, float pixelsPerUnit) {
+        int spriteIndex = images.indexOf(image);
+        if (spriteIndex == -1) {
+            spriteIndex = images.size();
+            images.add(image);
+        }
+        instanceData.putInt(offset + SpriteInstances2d.IMAGE_INDEX_OFFSET, spriteIndex);
+        instanceData.putFloat(offset + SpriteInstances2d.SIZE_OFFSET, image.getWidth() / pixelsPerUnit);
+        instanceData.putFloat(offset + SpriteInstances2d.SIZE_OFFSET + Float.BYTES, image.getHeight() / pixelsPerUnit);
+    }
+
+    private void writeWorldMatrix(ByteBuffer instanceData, int offset, float[] m, int entityId) {
+        int w = entityId * WorldTransform2d.FLOATS;
+        // Negate y because joml was made for OpenGL which has an inverted y-axis
+        modelMatrix.set(m[w], m[w + 1], 0, 0, m[w + 2], m[w + 3], 0, 0, 0, 0, 1, 0, m[w + 4], -m[w + 5], 0, 1);
+        modelMatrix.get(offset + SpriteInstances2d.MODEL_MATRIX_OFFSET, instanceData);
+    }
+
+    private void writeLocalMatrix(ByteBuffer instanceData, int offset, float x, float y, float rot, float scaleX, float scaleY) {
+        rotation.rotationZ(rot);
+        // Negate y because joml was made for OpenGL which has an inverted y-axis
+        modelMatrix.translationRotateScale(x, -y, 0, rotation.x, rotation.y, rotation.z, rotation.w, scaleX, scaleY, 1);
+        modelMatrix.get(offset + SpriteInstances2d.MODEL_MATRIX_OFFSET, instanceData);
+    }
+    //endregion
+
+    /**
+     * Waits for the oldest frame in flight, uploads the instance data and submits and presents the frame.
+     */
+    private void submitFrame(MutableList<ImageProvider> images, CameraMatrices cameraMatrices) {
         try (MemoryStack stack = stackPush()) {
             VulkanObjects.FrameResources frameResource = vulkanObjects.frameResources[lastImageIndex == 2 ? 0 : lastImageIndex + 1];
 
@@ -105,40 +370,15 @@ public class Renderer2d extends BaseSystem {
             IntBuffer waitStages = stack.ints(VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT);
             LongBuffer signalSemaphores = stack.longs(frameResource.renderFinishedSemaphore);
 
-            //region Build frame data
-            MutableList<ImageProvider> images = Lists.mutable.empty();
-            ByteBuffer instanceData = stack.malloc(InstanceData.BYTES * entities.size());
-
-            entities.forEachWithIndex((e, i) -> {
-                ImageProvider image = sprite2d.getSprite(e);
-                int spriteIndex;
-                if (images.contains(image))
-                    spriteIndex = images.indexOf(image);
-                else {
-                    spriteIndex = images.size();
-                    images.add(image);
-                }
-
-                Vector2f pos = transform.getPosition(e, new Vector2f());
-                Vector2f scale = transform.getScale(e, new Vector2f());
-                float rot = transform.getRotation(e);
-                // Negate y because joml was made for OpenGL which has an inverted y-axis
-                Matrix4f modelMatrix = new Matrix4f().translationRotateScale(new Vector3f(pos.x, -pos.y, 0), new Quaternionf().rotateZ(rot), new Vector3f(scale.x, scale.y, 1));
-
-                Vector2f size = new Vector2f(sprite2d.getSize(e)).div(pixelScale.getPixelsPerUnit());
-                new InstanceData(spriteIndex, size, modelMatrix).writeToBuffer(instanceData, i * InstanceData.BYTES);
-            });
-
             FrameData frameData = new FrameData(
-                    VkBufferHelper.createFilledBuffer(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT, instanceData, null),
+                    VkBufferHelper.createFilledBuffer(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT, instances.getData(), null),
                     VkDescriptorHelper.createDescriptorSet(Engine.getLogicalDevice(), vulkanObjects.descriptorPool, vulkanObjects.descriptorSetLayout,
                             new VkDescriptorHelper.DescriptorImageBinding(0, VK_DESCRIPTOR_TYPE_COMBINED_IMAGE_SAMPLER, 0,
                                     images.stream().map(i -> new VkDescriptorHelper.Image(i.getImageView(), i.getSampler(), VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL)).toArray(VkDescriptorHelper.Image[]::new))),
-                    entities.size());
-            //endregion
+                    instances.size());
 
             VkCommandBuffer commandBuffer = frameResource.commandBuffer;
-            recordCommandBuffer(commandBuffer, frameResource, CameraMatrices.fromCamera(camera, transform, getScene().getEntitiesByComponents(Camera2d.class).getFirst()), frameData);
+            recordCommandBuffer(commandBuffer, frameResource, cameraMatrices, frameData);
 
             VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
             submitInfo.sType(VK_STRUCTURE_TYPE_SUBMIT_INFO);
@@ -1,47 +1,83 @@
 package org.totodev.engine.rendering;
 
-import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
-import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
 import org.jetbrains.annotations.*;
 import org.joml.Vector2i;
-import org.totodev.engine.ecs.Component;
+import org.totodev.engine.ecs.*;
 import org.totodev.engine.resources.ResourceManager;
 import org.totodev.engine.resources.image.ImageResource;
 import org.totodev.engine.resources.scene.ComponentDataModel;
 
-public class Sprite2d implements Component {
-    private final MutableIntObjectMap<ImageResource> images = IntObjectMaps.mutable.empty();
+import java.util.Arrays;
+
+public class Sprite2d extends SparseSetComponent implements Snapshottable<Sprite2d.Snapshot> {
+    public static final class Snapshot extends SparseSetSnapshot {
+        private ImageResource[] images = new ImageResource[0];
+
+        public ImageResource getSprite(int entityId) {
+            int i = indexOf(entityId);
+            if (i == -1) return null;
+            return images[i];
+        }
+    }
+
+    private ImageResource[] images = new ImageResource[0];
 
     public ImageResource getSprite(int entityId) {
-        return images.get(entityId);
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return images[i];
     }
 
     public void setSprite(int entityId, ImageResource image) {
-        images.put(entityId, image);
+        images[addEntity(entityId)] = image;
     }
 
     public Vector2i getSize(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        return images.get(entityId).getSize();
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return images[i].getSize();
     }
 
     @Override
-    public void resetEntity(int entityId) {
-        images.remove(entityId);
+    public @NotNull Snapshot snapshot(@Nullable Snapshot reuse) {
+        Snapshot snapshot = reuse == null ? new Snapshot() : reuse;
+        copyIndexTo(snapshot);
+        snapshot.images = Snapshot.copy(images, snapshot.images, size());
+        // Release images that are no longer used
+        Arrays.fill(snapshot.images, size(), snapshot.images.length, null);
+        return snapshot;
     }
 
+    //region Storage
     @Override
-    public void deserializeState(@NotNull ComponentDataModel data) {
-        setSprite(data.entity, ResourceManager.getImage(data.value));
+    protected void resizeData(int capacity) {
+        images = Arrays.copyOf(images, capacity);
     }
+
     @Override
-    public @Nullable String serializeState(int entityId) {
-        if (!isPresentOn(entityId)) return null;
-        return images.get(entityId).getResourceKey();
+    protected void moveData(int fromIndex, int toIndex) {
+        images[toIndex] = images[fromIndex];
     }
 
     @Override
-    public boolean isPresentOn(int entityId) {
-        return images.containsKey(entityId);
+    protected void initData(int index) {
+        images[index] = null;
+    }
+
+    @Override
+    protected void clearData(int index) {
+        images[index] = null;
+    }
+    //endregion
+
+    @Override
+    public void deserializeState(@NotNull ComponentDataModel data) {
+        setSprite(data.entity, ResourceManager.getImage(data.value));
+    }
+    @Override
+    public @Nullable String serializeState(int entityId) {
+        int i = indexOf(entityId);
+        if (i == -1) return null;
+        return images[i].getResourceKey();
     }
 }
@@ -0,0 +1,36 @@
+package org.totodev.engine.rendering;
+
+import org.jetbrains.annotations.*;
+import org.totodev.engine.ecs.NativeSparseSetComponent;
+import org.totodev.engine.resources.scene.ComponentDataModel;
+
+/**
+ * The instance data of every rendered sprite, stored off-heap in the exact layout of {@link InstanceData},
+ * so the whole component can be uploaded to the instance buffer in one copy. Owned and updated by {@link Renderer2d}.
+ */
+class SpriteInstances2d extends NativeSparseSetComponent {
+    public static final int IMAGE_INDEX_OFFSET = 0;
+    public static final int SIZE_OFFSET = Integer.BYTES;
+    public static final int MODEL_MATRIX_OFFSET = Integer.BYTES + 2 * Float.BYTES;
+
+    public SpriteInstances2d() {
+        super(InstanceData.BYTES);
+    }
+
+    /**
+     * @param entityId The entity to add
+     * @return The dense index of that entity
+     */
+    public int add(int entityId) {
+        return addEntity(entityId);
+    }
+
+    // Derived from Transform2d and Sprite2d every frame, so there is nothing to save
+    @Override
+    public void deserializeState(@NotNull ComponentDataModel data) {
+    }
+    @Override
+    public @Nullable String serializeState(int entityId) {
+        return null;
+    }
+}
@@ -37,6 +37,12 @@ public class ImageResource implements Resource, ImageProvider {
     public Vector2i getSize() {
         return new Vector2i(width, height);
     }
+    public int getWidth() {
+        return width;
+    }
+    public int getHeight() {
+        return height;
+    }
 
     public VkImageHelper.VkImage getImage() {
         if (loading) return getEmptyImage();
@@ -71,6 +77,8 @@ public class ImageResource implements Resource, ImageProvider {
 
     public void load() {
         if (isLoaded()) return;
+        // Without vulkan there is nothing to upload the image to
+        if (!Engine.hasGraphics()) return;
         Image temp = IO.loadImageFromFile(file);
         loading = true;
         Engine.executeOnWorkerPool(r -> {
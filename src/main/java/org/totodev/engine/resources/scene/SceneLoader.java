@@ -46,8 +46,7 @@ public class SceneLoader {
         }
 
         // Create entities
-        for (int i = 0; i < sceneModel.entityCount; i++)
-            scene.createEntity();
+        scene.createEntities(sceneModel.entityCount);
 
         // Register and initialize components
         for (ComponentModel componentModel : sceneModel.components) {
@@ -0,0 +1,86 @@
+package org.totodev.engine.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A histogram of non-negative values with a fixed number of buckets, similar to HdrHistogram. <br/>
+ * Every power of two is split into 32 buckets of equal width, so every value is stored with an error of at most about 3%.
+ * Values up to {@link #MAX_VALUE} are supported, larger values are counted as {@link #MAX_VALUE}.
+ * Recording only increments atomic counters and can be done from any number of threads without locking.
+ */
+public class LogLinearHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    /**
+     * The largest value that can be recorded, about 137 seconds in nanoseconds.
+     */
+    public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    public static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(bucketOf(value));
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            counts.set(i, 0);
+        max.set(0);
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Adds the counts of this histogram to the buckets of another histogram.
+     * @param buckets An array of {@link #BUCKET_COUNT} counts
+     * @return The number of values added
+     */
+    public long addTo(long[] buckets) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            int count = counts.get(i);
+            buckets[i] += count;
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param buckets    An array of {@link #BUCKET_COUNT} counts, see {@link #addTo(long[])}
+     * @param total      The number of values in the buckets
+     * @param percentile The percentile from 0 to 100
+     * @return The highest value that is stored in the same bucket as the value at the percentile, or 0, if there are no values
+     */
+    public static long valueAtPercentile(long[] buckets, long total, double percentile) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return highestValueOf(i);
+        }
+        return MAX_VALUE;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + subBucket * width + width - 1;
+    }
+}
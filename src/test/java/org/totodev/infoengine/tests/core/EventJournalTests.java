@@ -0,0 +1,80 @@
+package org.totodev.infoengine.tests.core;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.*;
+import org.totodev.engine.core.components.UpdateGroups;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.*;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.io.*;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class EventJournalTests {
+    private static Scene recordingScene(StringBuilder log) {
+        Scene scene = new Scene();
+        Updater updater = new Updater();
+        updater.setRunInOwnThread(false);
+        scene.addSystem(updater);
+        scene.events.subscribe("Input", (EventListener.OfInt) key -> log.append("key ").append(key).append(';'));
+        scene.events.subscribe(Updater.EVENT_UPDATE, (EventListener.OfFloat) delta -> log.append("tick ").append(delta).append(';'));
+        scene.events.subscribe(UpdateGroups.eventName("physics", Updater.EVENT_UPDATE), (EventListener.OfFloat) delta -> log.append("physics ").append(delta).append(';'));
+        return scene;
+    }
+
+    @Test
+    public void replaysRecordedSession() throws IOException {
+        StringBuilder recorded = new StringBuilder();
+        Scene scene = recordingScene(recorded);
+        scene.start();
+        Updater updater = scene.getSystem(Updater.class);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EventJournal journal = new EventJournal(bytes)) {
+            updater.setJournal(journal);
+            updater.tick(0.5f);
+            journal.inject("Input", 42);
+            journal.inject("Input", 7);
+            updater.tick(0.25f);
+            updater.setJournal(null);
+        }
+        Assertions.assertEquals("tick 0.5;key 42;key 7;tick 0.25;", recorded.toString());
+
+        StringBuilder replayed = new StringBuilder();
+        JournalReplay replay = new JournalReplay(recordingScene(replayed), new ByteArrayInputStream(bytes.toByteArray()));
+        Assertions.assertEquals(2, replay.run());
+        Assertions.assertEquals(recorded.toString(), replayed.toString());
+        Assertions.assertEquals(2, replay.getTickNanos().length);
+    }
+
+    @Test
+    public void replaysUpdateGroupsBetweenUpdates() throws IOException {
+        StringBuilder recorded = new StringBuilder();
+        Scene scene = recordingScene(recorded);
+        scene.start();
+        Updater updater = scene.getSystem(Updater.class);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EventJournal journal = new EventJournal(bytes)) {
+            updater.setJournal(journal);
+            updater.tickGroup("physics", 0.125f);
+            updater.tick(0.5f);
+            updater.tickGroup("physics", 0.125f);
+            updater.setJournal(null);
+        }
+        Assertions.assertEquals("physics 0.125;tick 0.5;physics 0.125;", recorded.toString());
+        Assertions.assertEquals(2, updater.getTimings().getSummary(TickTimings.Metric.GROUP).count());
+
+        StringBuilder replayed = new StringBuilder();
+        JournalReplay replay = new JournalReplay(recordingScene(replayed), new ByteArrayInputStream(bytes.toByteArray()));
+        replay.run();
+        Assertions.assertEquals(recorded.toString(), replayed.toString());
+    }
+
+    @Test
+    public void rejectsArgumentsThatCanNotBeWritten() throws IOException {
+        try (EventJournal journal = new EventJournal(new ByteArrayOutputStream())) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> journal.inject("Input", new Object()));
+        }
+    }
+}
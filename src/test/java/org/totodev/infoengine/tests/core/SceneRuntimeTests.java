@@ -0,0 +1,138 @@
+package org.totodev.infoengine.tests.core;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.SceneRuntime;
+import org.totodev.engine.core.components.UpdateGroups;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.*;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class SceneRuntimeTests {
+    private static Scene countingScene(AtomicInteger updates) throws ReflectiveOperationException {
+        Scene scene = new Scene();
+        scene.addSystem(new Updater());
+        MethodHandle handle = MethodHandles.lookup().findVirtual(AtomicInteger.class, "incrementAndGet", MethodType.methodType(int.class))
+                .bindTo(updates);
+        scene.events.subscribe(Updater.EVENT_UPDATE, MethodHandles.dropArguments(handle, 0, float.class));
+        return scene;
+    }
+
+    @Test
+    public void updatesManyScenesOnFewThreads() throws Exception {
+        AtomicInteger[] updates = new AtomicInteger[20];
+        try (SceneRuntime runtime = new SceneRuntime(2)) {
+            for (int i = 0; i < updates.length; i++) {
+                updates[i] = new AtomicInteger();
+                runtime.add(countingScene(updates[i]));
+            }
+            Thread.sleep(500);
+        }
+
+        for (AtomicInteger count : updates)
+            Assertions.assertTrue(count.get() >= 10, "Every scene should be updated about 30 times, was " + count.get());
+    }
+
+    @Test
+    public void stopsUpdatingRemovedScenes() throws Exception {
+        AtomicInteger updates = new AtomicInteger();
+        try (SceneRuntime runtime = new SceneRuntime(1)) {
+            Scene scene = countingScene(updates);
+            runtime.add(scene);
+            Thread.sleep(100);
+            runtime.remove(scene);
+            Thread.sleep(50);
+
+            int count = updates.get();
+            Thread.sleep(100);
+            Assertions.assertEquals(count, updates.get());
+            Assertions.assertEquals(0, runtime.getSceneCount());
+        }
+    }
+
+    @Test
+    public void takesOverRunningSceneOnlyAfterItsOwnLoopStopped() throws Exception {
+        Scene scene = new Scene();
+        scene.addSystem(new Updater());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        scene.events.subscribe(Updater.EVENT_UPDATE, (EventListener.OfFloat) delta -> {
+            if (running.incrementAndGet() > 1) overlaps.incrementAndGet();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        });
+        scene.start();
+        Thread.sleep(50);
+
+        try (SceneRuntime runtime = new SceneRuntime(2)) {
+            runtime.add(scene);
+            Thread.sleep(200);
+        }
+        Assertions.assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void finishesRunningUpdateBeforeRemoveReturns() throws Exception {
+        Scene scene = new Scene();
+        Updater updater = new Updater();
+        scene.addSystem(updater);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch updating = new CountDownLatch(1);
+        scene.events.subscribe(Updater.EVENT_UPDATE, (EventListener.OfFloat) delta -> {
+            if (running.incrementAndGet() > 1) overlaps.incrementAndGet();
+            updating.countDown();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        });
+
+        try (SceneRuntime runtime = new SceneRuntime(1)) {
+            runtime.add(scene);
+            Assertions.assertTrue(updating.await(1, TimeUnit.SECONDS));
+            runtime.remove(scene);
+            Assertions.assertEquals(0, running.get());
+
+            updater.setRunInOwnThread(true);
+            Thread.sleep(100);
+            updater.setRunInOwnThread(false);
+        }
+        Assertions.assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void runsUpdateGroupsByDeadline() {
+        Scene scene = new Scene();
+        Updater updater = new Updater();
+        updater.setRunInOwnThread(false);
+        scene.addSystem(updater);
+        UpdateGroups groups = new UpdateGroups();
+        groups.setRate("Fast", 100);
+        groups.setRate("Slow", 10);
+        scene.addGlobalComponent(groups);
+        scene.start();
+
+        int[] fast = new int[1], slow = new int[1];
+        scene.events.subscribe(UpdateGroups.eventName("Fast", Updater.EVENT_UPDATE), (EventListener.OfFloat) delta -> fast[0]++);
+        scene.events.subscribe(UpdateGroups.eventName("Slow", Updater.EVENT_UPDATE), (EventListener.OfFloat) delta -> slow[0]++);
+
+        long start = 1_000_000_000L;
+        updater.runGroups(start);
+        long next = updater.runGroups(start + 50_000_000L);
+
+        Assertions.assertEquals(6, fast[0]);
+        Assertions.assertEquals(1, slow[0]);
+        Assertions.assertEquals(start + 60_000_000L, next);
+    }
+}
@@ -0,0 +1,30 @@
+package org.totodev.infoengine.tests.core;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.TickTimings;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class TickTimingsTests {
+    @Test
+    public void reportsPercentilesWithinThreePercent() {
+        TickTimings timings = new TickTimings();
+        long now = System.nanoTime();
+        for (int i = 1; i <= 1000; i++)
+            timings.record(TickTimings.Metric.UPDATE, i * 1000L, now);
+
+        TickTimings.Summary summary = timings.getSummary(TickTimings.Metric.UPDATE);
+        Assertions.assertEquals(1000, summary.count());
+        Assertions.assertEquals(500_000, summary.p50(), 500_000 * 0.03);
+        Assertions.assertEquals(990_000, summary.p99(), 990_000 * 0.03);
+        Assertions.assertEquals(1_000_000, summary.max());
+        Assertions.assertEquals(0, timings.getSummary(TickTimings.Metric.TICK).count());
+    }
+
+    @Test
+    public void forgetsTimingsOutsideTheWindow() {
+        TickTimings timings = new TickTimings();
+        timings.record(TickTimings.Metric.TICK, 5_000_000, System.nanoTime() - 60_000_000_000L);
+        Assertions.assertEquals(0, timings.getSummary(TickTimings.Metric.TICK).count());
+    }
+}
@@ -0,0 +1,41 @@
+package org.totodev.infoengine.tests.core;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.*;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class UpdaterTests {
+    @Test
+    public void clampsCatchUpAndInterpolatesFixedSteps() {
+        Scene scene = new Scene();
+        Updater updater = new Updater();
+        updater.setRunInOwnThread(false);
+        updater.setMaxCatchUpSteps(5);
+        scene.addSystem(updater);
+        int[] updates = new int[1];
+        float[] deltas = new float[1];
+        scene.events.subscribe(Updater.EVENT_UPDATE, (EventListener.OfFloat) delta -> {
+            updates[0]++;
+            deltas[0] = delta;
+        });
+        scene.start();
+        long step = updater.getTickIntervalNanos();
+
+        Assertions.assertEquals(step, updater.runFixedSteps(0));
+        Assertions.assertEquals(0, updates[0]);
+
+        long now = step * 2 + step / 2;
+        Assertions.assertEquals(now + step - step / 2, updater.runFixedSteps(now));
+        Assertions.assertEquals(2, updates[0]);
+        Assertions.assertEquals(step / 1000000000f, deltas[0]);
+        Assertions.assertEquals(0.5f, updater.getInterpolationAlpha(), 0.001f);
+
+        // Falling far behind only runs the max catch up steps and drops the rest
+        now += step * 100;
+        Assertions.assertEquals(now + step, updater.runFixedSteps(now));
+        Assertions.assertEquals(7, updates[0]);
+        Assertions.assertEquals(0, updater.getInterpolationAlpha());
+    }
+}
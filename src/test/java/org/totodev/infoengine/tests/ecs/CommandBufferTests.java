@@ -0,0 +1,73 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.*;
+import org.totodev.engine.ecs.*;
+import org.totodev.engine.physics.Velocity2d;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.util.concurrent.*;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class CommandBufferTests {
+    @Test
+    public void defersChangesUntilPlayback() {
+        Scene scene = new Scene();
+        Velocity2d velocity = new Velocity2d();
+        scene.addComponent(velocity);
+        int existing = scene.createEntity();
+
+        CommandBuffer commands = scene.getCommandBuffer();
+        int placeholder = commands.createEntity();
+        commands.run(placeholder, (s, e) -> velocity.setVelocity(e, 1, 2));
+        commands.destroyEntity(existing);
+
+        Assertions.assertTrue(placeholder < 0);
+        Assertions.assertTrue(scene.isAlive(existing));
+        Assertions.assertEquals(1, scene.getAllEntities().size());
+
+        scene.playbackCommands();
+        Assertions.assertTrue(commands.isEmpty());
+        Assertions.assertFalse(scene.isAlive(existing));
+        Assertions.assertEquals(1, scene.getAllEntities().size());
+
+        int created = scene.getAllEntities().intIterator().next();
+        Assertions.assertEquals(new Vector2f(1, 2), velocity.getVelocity(created, new Vector2f()));
+    }
+
+    @Test
+    public void skipsCommandsForDestroyedEntityWhoseIdWasReused() {
+        Scene scene = new Scene();
+        Velocity2d velocity = new Velocity2d();
+        scene.addComponent(velocity);
+        int existing = scene.createEntity();
+
+        CommandBuffer commands = scene.getCommandBuffer();
+        commands.destroyEntity(existing);
+        int placeholder = commands.createEntity();
+        commands.run(placeholder, (s, e) -> velocity.setVelocity(e, 3, 4));
+        commands.run(existing, (s, e) -> velocity.setVelocity(e, 1, 2));
+        scene.playbackCommands();
+
+        int created = scene.getAllEntities().intIterator().next();
+        Assertions.assertEquals(existing, created);
+        Assertions.assertEquals(new Vector2f(3, 4), velocity.getVelocity(created, new Vector2f()));
+
+        commands.run(created, (s, e) -> velocity.setVelocity(e, 5, 6));
+        scene.playbackCommands();
+        Assertions.assertEquals(new Vector2f(5, 6), velocity.getVelocity(created, new Vector2f()));
+    }
+
+    @Test
+    public void collectsCommandsFromAllThreads() throws InterruptedException {
+        Scene scene = new Scene();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 100; i++)
+            executor.execute(() -> scene.getCommandBuffer().createEntity());
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        scene.playbackCommands();
+        Assertions.assertEquals(100, scene.getAllEntities().size());
+    }
+}
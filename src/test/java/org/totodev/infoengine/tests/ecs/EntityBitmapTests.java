@@ -0,0 +1,61 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.ecs.EntityBitmap;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.util.*;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class EntityBitmapTests {
+    private static EntityBitmap bitmapOf(Set<Integer> values) {
+        EntityBitmap bitmap = new EntityBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static int[] sorted(Set<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    @Test
+    public void matchesHashSetForSparseAndDenseChunks() {
+        Random random = new Random(42);
+        Set<Integer> a = new HashSet<>(), b = new HashSet<>();
+        // Dense in the first chunk, sparse in the following ones
+        for (int i = 0; i < 50000; i++)
+            a.add(random.nextInt(65536));
+        for (int i = 0; i < 3000; i++)
+            b.add(random.nextInt(300000));
+
+        EntityBitmap bitmapA = bitmapOf(a), bitmapB = bitmapOf(b);
+        Assertions.assertArrayEquals(sorted(a), bitmapA.toArray());
+
+        Set<Integer> and = new HashSet<>(a);
+        and.retainAll(b);
+        Assertions.assertArrayEquals(sorted(and), bitmapA.and(bitmapB).toArray());
+
+        Set<Integer> or = new HashSet<>(a);
+        or.addAll(b);
+        Assertions.assertArrayEquals(sorted(or), bitmapA.or(bitmapB).toArray());
+
+        Set<Integer> andNot = new HashSet<>(a);
+        andNot.removeAll(b);
+        Assertions.assertArrayEquals(sorted(andNot), bitmapA.andNot(bitmapB).toArray());
+        Assertions.assertEquals(a.size(), bitmapA.size());
+    }
+
+    @Test
+    public void removesEntities() {
+        EntityBitmap bitmap = new EntityBitmap();
+        for (int i = 0; i < 10000; i++)
+            bitmap.add(i);
+        for (int i = 0; i < 10000; i += 2)
+            Assertions.assertTrue(bitmap.remove(i));
+
+        Assertions.assertFalse(bitmap.remove(0));
+        Assertions.assertEquals(5000, bitmap.size());
+        Assertions.assertTrue(bitmap.contains(9999));
+        Assertions.assertFalse(bitmap.contains(9998));
+    }
+}
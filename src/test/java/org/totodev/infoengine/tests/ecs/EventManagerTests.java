@@ -0,0 +1,223 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.eclipse.collections.api.factory.Sets;
+import org.junit.jupiter.api.*;
+import org.totodev.engine.ecs.*;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class EventManagerTests {
+    private static MethodHandle handle(Runnable runnable) throws ReflectiveOperationException {
+        return MethodHandles.lookup().findVirtual(Runnable.class, "run", MethodType.methodType(void.class)).bindTo(runnable);
+    }
+
+    private static ComponentAccess access(AccessMode mode, Class<?> type) {
+        return mode == AccessMode.READ
+                ? new ComponentAccess(Sets.mutable.of(type), Sets.mutable.empty())
+                : new ComponentAccess(Sets.mutable.empty(), Sets.mutable.of(type));
+    }
+
+    @Test
+    public void runsReadersAtTheSameTime() throws ReflectiveOperationException {
+        EventManager events = new EventManager();
+        events.setParallel("Test", true);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        events.setExecutor(pool);
+
+        try {
+            // Both subscribers only finish if they run at the same time
+            CountDownLatch latch = new CountDownLatch(2);
+            AtomicInteger finished = new AtomicInteger();
+            Runnable subscriber = () -> {
+                latch.countDown();
+                try {
+                    if (latch.await(5, TimeUnit.SECONDS)) finished.incrementAndGet();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+
+            events.subscribe("Test", handle(subscriber), access(AccessMode.READ, Data.class));
+            events.subscribe("Test", handle(subscriber::run), access(AccessMode.READ, Data.class));
+            events.invokeEvent("Test");
+
+            Assertions.assertEquals(2, finished.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void serializesConflictingSubscribers() throws ReflectiveOperationException {
+        EventManager events = new EventManager();
+        events.setParallel("Test", true);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+        Runnable subscriber = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+            calls.incrementAndGet();
+        };
+
+        events.subscribe("Test", handle(subscriber), access(AccessMode.WRITE, Data.class));
+        events.subscribe("Test", handle(subscriber::run), access(AccessMode.READ, Data.class));
+        events.subscribe("Test", handle(subscriber::run));
+        events.invokeEvent("Test");
+
+        Assertions.assertEquals(3, calls.get());
+        Assertions.assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void profilesEventsAndSubscribers() throws ReflectiveOperationException {
+        EventManager events = new EventManager();
+        MethodHandle subscriber = handle(() -> {
+        });
+        events.subscribe("Test", subscriber);
+        events.setSubscriberName(subscriber, "TestSystem.update");
+
+        events.invokeEvent("Test");
+        EventProfiler profiler = events.enableProfiling();
+        events.invokeEvent("Test");
+        events.invokeEvent("Test");
+
+        EventProfiler.Profile profile = profiler.getProfiles().detect(p -> "TestSystem.update".equals(p.subscriber()));
+        Assertions.assertEquals(2, profile.calls());
+        Assertions.assertTrue(profile.maxNanos() <= profile.totalNanos());
+        Assertions.assertEquals(2, profiler.getProfiles().detect(p -> p.subscriber() == null).calls());
+
+        events.disableProfiling();
+        events.invokeEvent("Test");
+        Assertions.assertNull(events.getProfiler());
+        Assertions.assertEquals(2, profiler.getProfiles().detect(p -> "TestSystem.update".equals(p.subscriber())).calls());
+    }
+
+    @Test
+    public void passesPrimitivesToListenersAndMethodHandles() throws ReflectiveOperationException {
+        EventManager events = new EventManager();
+        float[] received = new float[2];
+        events.subscribe("Update", (EventListener.OfFloat) value -> received[0] = value);
+        events.subscribe("Update", MethodHandles.lookup()
+                .findVirtual(EventManagerTests.class, "receive", MethodType.methodType(void.class, float[].class, float.class))
+                .bindTo(this).bindTo(received));
+
+        events.invokeEvent("Update", 0.5f);
+
+        Assertions.assertEquals(0.5f, received[0]);
+        Assertions.assertEquals(0.5f, received[1]);
+    }
+
+    @Test
+    public void widensArgumentsLikeMethodHandles() throws ReflectiveOperationException {
+        EventManager events = new EventManager();
+        float[] floats = new float[1];
+        long[] longs = new long[1];
+        events.subscribe("Widen", (EventListener.OfFloat) value -> floats[0] += value);
+        events.subscribe("Long", MethodHandles.lookup()
+                .findVirtual(EventManagerTests.class, "receiveLong", MethodType.methodType(void.class, long[].class, long.class))
+                .bindTo(this).bindTo(longs));
+
+        events.invokeEvent("Widen", 2);
+        events.invokeEvent("Widen", 3L);
+        events.invokeEvent("Widen", new Object[]{4});
+        events.invokeEvent("Long", Long.MAX_VALUE);
+
+        Assertions.assertEquals(9f, floats[0]);
+        Assertions.assertEquals(Long.MAX_VALUE, longs[0]);
+    }
+
+    private void receiveLong(long[] received, long value) {
+        received[0] = value;
+    }
+
+    @Test
+    public void callsSubscribersInPriorityThenSubscriptionOrder() {
+        EventManager events = new EventManager();
+        StringBuilder order = new StringBuilder();
+        events.subscribe("Order", (EventListener.OfNone) () -> order.append('a'));
+        events.subscribe("Order", (EventListener.OfNone) () -> order.append('b'));
+        events.subscribe("Order", (EventListener.OfNone) () -> order.append('c'), null, 1);
+        EventListener.OfNone last = () -> order.append('d');
+        events.subscribe("Order", last, null, -1);
+
+        events.invokeEvent(EventRegistry.getId("Order"));
+        events.unsubscribe("Order", last);
+        events.invokeEvent("Order");
+
+        Assertions.assertEquals("cabdcab", order.toString());
+        Assertions.assertEquals("Order", EventRegistry.getName(EventRegistry.getId("Order")));
+    }
+
+    @Test
+    public void keepsPrioritiesPerEvent() {
+        EventManager events = new EventManager();
+        StringBuilder order = new StringBuilder();
+        EventListener.OfNone shared = () -> order.append('s');
+        events.subscribe("First", shared, null, 10);
+        events.subscribe("Second", shared, null, -10);
+        events.subscribe("First", (EventListener.OfNone) () -> order.append('a'), null, 0);
+        events.subscribe("Second", (EventListener.OfNone) () -> order.append('b'), null, 0);
+
+        events.invokeEvent("First");
+        events.invokeEvent("Second");
+
+        Assertions.assertEquals("sabs", order.toString());
+    }
+
+    @Test
+    public void deliversQueuedEventsAsBatchAfterPhase() {
+        EventManager events = new EventManager();
+        events.setQueued("Created", new EventQueue.OfInt(16), "Phase");
+        int[] batches = new int[1];
+        int[] sum = new int[1];
+        events.subscribe("Created", (EventListener.OfIntBatch) (values, count) -> {
+            batches[0]++;
+            for (int i = 0; i < count; i++) sum[0] += values[i];
+        });
+
+        events.invokeEvent("Created", 1);
+        events.invokeEvent("Created", 2);
+        events.invokeEvent("Created", 3);
+        Assertions.assertEquals(0, batches[0]);
+
+        events.invokeEvent("Phase");
+        Assertions.assertEquals(1, batches[0]);
+        Assertions.assertEquals(6, sum[0]);
+
+        events.invokeEvent("Phase");
+        Assertions.assertEquals(1, batches[0]);
+    }
+
+    @Test
+    public void queuesFloatArguments() {
+        EventManager events = new EventManager();
+        events.setQueued("Moved", new EventQueue.OfObject(4), "Phase");
+        float[] sum = new float[1];
+        events.subscribe("Moved", (EventListener.OfFloat) value -> sum[0] += value);
+
+        events.invokeEvent("Moved", 1.5f);
+        events.invokeEvent("Moved", 2f);
+        Assertions.assertEquals(0, sum[0]);
+
+        events.invokeEvent("Phase");
+        Assertions.assertEquals(3.5f, sum[0]);
+    }
+
+    private void receive(float[] received, float value) {
+        received[1] = value;
+    }
+
+    private static class Data {
+    }
+}
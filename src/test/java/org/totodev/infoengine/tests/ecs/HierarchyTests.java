@@ -0,0 +1,101 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.joml.Matrix3x2f;
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.components.*;
+import org.totodev.engine.core.systems.*;
+import org.totodev.engine.ecs.Scene;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class HierarchyTests {
+    @Test
+    public void sortsEntitiesByDepth() {
+        Hierarchy hierarchy = new Hierarchy();
+        hierarchy.setParent(3, 2);
+        hierarchy.setParent(2, 1);
+        hierarchy.setParent(4, 1);
+
+        Assertions.assertEquals(3, hierarchy.getLevelCount());
+        int[] ordered = hierarchy.getOrdered();
+        Assertions.assertEquals(1, ordered[hierarchy.getLevelStart(0)]);
+        Assertions.assertEquals(2, hierarchy.getLevelEnd(1) - hierarchy.getLevelStart(1));
+        Assertions.assertEquals(3, ordered[hierarchy.getLevelStart(2)]);
+    }
+
+    @Test
+    public void rejectsCycles() {
+        Hierarchy hierarchy = new Hierarchy();
+        hierarchy.setParent(2, 1);
+        hierarchy.setParent(3, 2);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> hierarchy.setParent(1, 3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> hierarchy.setParent(1, 1));
+        Assertions.assertEquals(-1, hierarchy.getParent(1));
+    }
+
+    @Test
+    public void detachesChildrenOnReset() {
+        Hierarchy hierarchy = new Hierarchy();
+        hierarchy.setParent(2, 1);
+        hierarchy.setParent(3, 1);
+
+        hierarchy.resetEntity(1);
+
+        Assertions.assertFalse(hierarchy.hasParent(2));
+        Assertions.assertFalse(hierarchy.hasParent(3));
+        Assertions.assertFalse(hierarchy.isPresentOn(1));
+    }
+
+    @Test
+    public void propagatesOnlyChangedTransforms() {
+        Scene scene = new Scene();
+        Transform2d transform = new Transform2d();
+        scene.addComponent(transform);
+        scene.addSystem(new TransformPropagator2d());
+        scene.start();
+        Hierarchy hierarchy = scene.getComponent(Hierarchy.class);
+        WorldTransform2d world = scene.getGlobalComponent(WorldTransform2d.class);
+
+        int parent = scene.createEntity();
+        int child = scene.createEntity();
+        transform.setPosition(parent, 10, 0);
+        transform.setRotation(parent, (float) Math.PI / 2);
+        transform.setPosition(child, 1, 0);
+        hierarchy.setParent(child, parent);
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+
+        Assertions.assertEquals(10, world.getPositionX(child), 1e-5f);
+        Assertions.assertEquals(1, world.getPositionY(child), 1e-5f);
+
+        scene.advanceChangeTick();
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        long computed = world.getChangeTick(child);
+        scene.advanceChangeTick();
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        Assertions.assertEquals(computed, world.getChangeTick(child));
+
+        transform.move(parent, 0, 5);
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        Assertions.assertEquals(6, world.getPositionY(child), 1e-5f);
+    }
+
+    @Test
+    public void invalidatesWorldMatricesOfDestroyedEntities() {
+        Scene scene = new Scene();
+        Transform2d transform = new Transform2d();
+        scene.addComponent(transform);
+        scene.addSystem(new TransformPropagator2d());
+        scene.start();
+        WorldTransform2d world = scene.getGlobalComponent(WorldTransform2d.class);
+
+        int entity = scene.createEntity();
+        transform.setPosition(entity, 3, 4);
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        Assertions.assertTrue(world.isComputed(entity));
+
+        scene.destroyEntity(entity);
+        Assertions.assertFalse(world.isComputed(entity));
+        Assertions.assertNull(world.getMatrix(entity, new Matrix3x2f()));
+    }
+}
@@ -0,0 +1,89 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.ecs.*;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class QueryTests {
+    public static class FlagA extends FlagComponent {
+    }
+    public static class FlagB extends FlagComponent {
+    }
+
+    @Test
+    public void tracksComponentChanges() {
+        Scene scene = new Scene();
+        FlagA a = new FlagA();
+        FlagB b = new FlagB();
+        scene.addComponent(a);
+        scene.addComponent(b);
+
+        int e1 = scene.createEntity();
+        int e2 = scene.createEntity();
+        Query query = scene.query(FlagA.class, FlagB.class);
+        Assertions.assertTrue(query.isEmpty());
+
+        a.setFlag(e1, true);
+        b.setFlag(e1, true);
+        a.setFlag(e2, true);
+        Assertions.assertEquals(1, query.size());
+        Assertions.assertTrue(query.contains(e1));
+
+        b.setFlag(e2, true);
+        b.setFlag(e1, false);
+        Assertions.assertEquals(1, query.size());
+        Assertions.assertTrue(query.contains(e2));
+
+        scene.destroyEntity(e2);
+        Assertions.assertTrue(query.isEmpty());
+    }
+
+    @Test
+    public void returnsCachedQuery() {
+        Scene scene = new Scene();
+        Assertions.assertSame(scene.query(FlagA.class, FlagB.class), scene.query(FlagB.class, FlagA.class));
+    }
+
+    @Test
+    public void fillsQueryWhenComponentIsAdded() {
+        Scene scene = new Scene();
+        int entity = scene.createEntity();
+        Query query = scene.query(FlagA.class);
+
+        FlagA a = new FlagA();
+        a.setFlag(entity, true);
+        scene.addComponent(a);
+        Assertions.assertEquals(entity, query.getFirst());
+
+        scene.removeComponent(FlagA.class);
+        Assertions.assertTrue(query.isEmpty());
+    }
+
+    @Test
+    public void visitsEveryEntityOnceInChunks() {
+        Scene scene = new Scene();
+        FlagA a = new FlagA();
+        scene.addComponent(a);
+        for (int i = 0; i < 10000; i++)
+            a.setFlag(scene.createEntity(), true);
+
+        AtomicIntegerArray visits = new AtomicIntegerArray(10000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            scene.query(FlagA.class).forEachChunk(100, (entities, from, to) -> {
+                Assertions.assertTrue(to - from <= 100);
+                for (int i = from; i < to; i++)
+                    visits.incrementAndGet(entities[i]);
+            }, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < visits.length(); i++)
+            Assertions.assertEquals(1, visits.get(i));
+    }
+}
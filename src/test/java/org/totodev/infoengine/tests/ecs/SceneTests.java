@@ -0,0 +1,94 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.*;
+import org.totodev.engine.ecs.*;
+import org.totodev.engine.physics.Velocity2d;
+import org.totodev.engine.vulkan.SemVer;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.lang.invoke.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class SceneTests {
+    private static MethodHandle handle(Consumer<Object> consumer) throws ReflectiveOperationException {
+        return MethodHandles.lookup().findVirtual(Consumer.class, "accept", MethodType.methodType(void.class, Object.class)).bindTo(consumer);
+    }
+
+    @Test
+    public void createsEntitiesInOneBatch() throws ReflectiveOperationException {
+        Scene scene = new Scene();
+        AtomicInteger batches = new AtomicInteger();
+        scene.events.subscribe(CoreEvents.ENTITIES_CREATED, handle(ids -> batches.incrementAndGet()));
+
+        int reused = scene.createEntity();
+        scene.destroyEntity(reused);
+        int[] ids = scene.createEntities(1000);
+
+        Assertions.assertEquals(1, batches.get());
+        Assertions.assertEquals(1000, scene.getAllEntities().size());
+        Assertions.assertEquals(reused, ids[0]);
+        for (int id : ids)
+            Assertions.assertTrue(scene.isAlive(id));
+    }
+
+    @Test
+    public void firesSingleEntityEventsForBatches() {
+        Scene scene = new Scene();
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger destroyed = new AtomicInteger();
+        scene.events.subscribe(CoreEvents.ENTITY_CREATED, (EventListener.OfInt) id -> created.incrementAndGet());
+        scene.events.subscribe(CoreEvents.ENTITY_DESTROYED, (EventListener.OfInt) id -> destroyed.incrementAndGet());
+
+        int[] ids = scene.createEntities(10);
+        scene.destroyEntities(IntLists.mutable.of(ids[0], ids[1]));
+
+        Assertions.assertEquals(10, created.get());
+        Assertions.assertEquals(2, destroyed.get());
+    }
+
+    @Test
+    public void destroysEntitiesInOneBatch() throws ReflectiveOperationException {
+        Scene scene = new Scene();
+        Velocity2d velocity = new Velocity2d();
+        scene.addComponent(velocity);
+        AtomicInteger batches = new AtomicInteger();
+        scene.events.subscribe(CoreEvents.ENTITIES_DESTROYED, handle(ids -> batches.incrementAndGet()));
+
+        int[] ids = scene.createEntities(100);
+        for (int id : ids)
+            velocity.setVelocity(id, 1, 1);
+
+        scene.destroyEntities(IntLists.mutable.of(Arrays.copyOf(ids, 50)));
+
+        Assertions.assertEquals(1, batches.get());
+        Assertions.assertEquals(50, scene.getAllEntities().size());
+        Assertions.assertEquals(50, velocity.size());
+        Assertions.assertEquals(50, scene.query(Velocity2d.class).size());
+        Assertions.assertFalse(velocity.isPresentOn(ids[0]));
+    }
+
+    @AfterEach
+    public void resetHeadless() {
+        Engine.resetHeadless();
+    }
+
+    @Test
+    public void skipsGraphicsSystemsWhileHeadless() {
+        Engine.initializeHeadless("Test", new SemVer(1, 0, 0));
+        Scene scene = new Scene();
+        scene.addSystem(new GraphicsSystem());
+
+        Assertions.assertTrue(Engine.isHeadless());
+        Assertions.assertFalse(scene.hasSystem(GraphicsSystem.class));
+        Assertions.assertDoesNotThrow(() -> scene.removeSystem(GraphicsSystem.class));
+    }
+
+    @RequiresGraphics
+    private static class GraphicsSystem extends BaseSystem {
+    }
+}
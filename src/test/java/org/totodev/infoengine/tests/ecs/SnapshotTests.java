@@ -0,0 +1,91 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.CoreEvents;
+import org.totodev.engine.core.components.Transform2d;
+import org.totodev.engine.ecs.*;
+import org.totodev.engine.rendering.Camera2d;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class SnapshotTests {
+    @Test
+    public void keepsAcquiredSnapshotUnchanged() {
+        Scene scene = new Scene();
+        Transform2d transform = new Transform2d();
+        scene.addComponent(transform);
+        scene.snapshots.track(Transform2d.class);
+        int entity = scene.createEntity();
+        transform.setPosition(entity, 1, 2);
+        scene.snapshots.publish();
+
+        try (SceneSnapshot snapshot = scene.snapshots.acquire()) {
+            Assertions.assertNotNull(snapshot);
+            transform.move(entity, 5, 0);
+            scene.snapshots.publish();
+            scene.snapshots.publish();
+
+            Transform2d.Snapshot transforms = snapshot.get(Transform2d.class);
+            Assertions.assertEquals(1, transforms.getPositionsX()[transforms.indexOf(entity)]);
+        }
+
+        try (SceneSnapshot snapshot = scene.snapshots.acquire()) {
+            Transform2d.Snapshot transforms = snapshot.get(Transform2d.class);
+            Assertions.assertEquals(6, transforms.getPositionsX()[transforms.indexOf(entity)]);
+        }
+    }
+
+    @Test
+    public void publishesNothingWithoutTrackedComponents() {
+        Scene scene = new Scene();
+        scene.snapshots.publish();
+        Assertions.assertNull(scene.snapshots.acquire());
+    }
+
+    @Test
+    public void dropsUntrackedComponentsFromReusedSnapshots() {
+        Scene scene = new Scene();
+        scene.addComponent(new Transform2d());
+        scene.addComponent(new Camera2d());
+        scene.snapshots.track(Transform2d.class);
+        scene.snapshots.track(Camera2d.class);
+        scene.snapshots.publish();
+        scene.snapshots.publish();
+
+        scene.snapshots.untrack(Camera2d.class);
+        scene.snapshots.publish();
+        try (SceneSnapshot snapshot = scene.snapshots.acquire()) {
+            Assertions.assertNotNull(snapshot.get(Transform2d.class));
+            Assertions.assertNull(snapshot.get(Camera2d.class));
+        }
+
+        scene.snapshots.untrack(Transform2d.class);
+        scene.snapshots.publish();
+        Assertions.assertNull(scene.snapshots.acquire());
+    }
+
+    @Test
+    public void announcesPublishedSnapshot() {
+        Scene scene = new Scene();
+        Camera2d camera = new Camera2d();
+        scene.addComponent(camera);
+        scene.snapshots.track(Camera2d.class);
+        int entity = scene.createEntity();
+        camera.setSize(entity, 16, 9);
+
+        AtomicLong publishedTick = new AtomicLong(-1);
+        scene.events.subscribe(CoreEvents.SNAPSHOT_PUBLISHED, (EventListener.OfNone) () -> {
+            try (SceneSnapshot snapshot = scene.snapshots.acquire()) {
+                Assertions.assertNotNull(snapshot);
+                publishedTick.set(snapshot.getTick());
+                Assertions.assertEquals(16, snapshot.get(Camera2d.class).getSize(entity, new Vector2f()).x);
+            }
+        });
+        scene.snapshots.publish();
+
+        Assertions.assertEquals(scene.getChangeTick(), publishedTick.get());
+    }
+}
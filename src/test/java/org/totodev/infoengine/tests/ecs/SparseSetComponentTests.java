@@ -0,0 +1,134 @@
+package org.totodev.infoengine.tests.ecs;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+import org.jetbrains.annotations.*;
+import org.joml.Vector2f;
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.components.Transform3d;
+import org.totodev.engine.ecs.*;
+import org.totodev.engine.physics.Velocity2d;
+import org.totodev.engine.resources.scene.ComponentDataModel;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class SparseSetComponentTests {
+    @Test
+    public void keepsDataPackedOnReset() {
+        Velocity2d velocity = new Velocity2d();
+        for (int i = 0; i < 100; i++)
+            velocity.setVelocity(i, i, -i);
+
+        velocity.resetEntity(10);
+        velocity.resetEntity(0);
+
+        Assertions.assertEquals(98, velocity.size());
+        Assertions.assertFalse(velocity.isPresentOn(10));
+        Assertions.assertNull(velocity.getVelocity(0, new Vector2f()));
+        for (int i = 0; i < velocity.size(); i++) {
+            int entity = velocity.entityAt(i);
+            Assertions.assertEquals(i, velocity.indexOf(entity));
+            Assertions.assertEquals(new Vector2f(entity, -entity), velocity.getVelocity(entity, new Vector2f()));
+        }
+    }
+
+    @Test
+    public void initializesDefaultsOnReuse() {
+        Velocity2d velocity = new Velocity2d();
+        velocity.setVelocity(1, 5, 5);
+        velocity.setRotVelocity(1, 3);
+        velocity.resetEntity(1);
+
+        velocity.setVelocity(2, 1, 1);
+        Assertions.assertEquals(0, velocity.getRotVelocity(2));
+    }
+
+    @Test
+    public void tracksChangesPerTick() {
+        Scene scene = new Scene();
+        Velocity2d velocity = new Velocity2d();
+        scene.addComponent(velocity);
+        int e1 = scene.createEntity();
+        int e2 = scene.createEntity();
+        velocity.setVelocity(e1, 1, 1);
+        velocity.setVelocity(e2, 1, 1);
+
+        long tick = scene.advanceChangeTick();
+        velocity.changeVelocity(e2, 1, 0);
+
+        Assertions.assertFalse(velocity.changedSince(e1, tick));
+        Assertions.assertTrue(velocity.changedSince(e2, tick));
+
+        MutableIntList changed = IntLists.mutable.empty();
+        scene.query(Velocity2d.class).forEachChangedSince(velocity, tick, changed::add);
+        Assertions.assertEquals(IntLists.mutable.of(e2), changed);
+    }
+
+    @Test
+    public void recomputesTransform3dMatricesAfterChanges() {
+        Transform3d transform = new Transform3d();
+        transform.setPosition(0, 1, 2, 3);
+        transform.setScale(0, 2, 2, 2);
+        transform.setRotation(0, 0, 0, (float) Math.PI / 2);
+
+        float[] matrices = transform.getMatrices();
+        Assertions.assertEquals(0, matrices[0], 1e-5f);
+        Assertions.assertEquals(2, matrices[1], 1e-5f);
+        Assertions.assertEquals(3, matrices[14], 1e-5f);
+
+        transform.move(0, 1, 0, 0);
+        Assertions.assertEquals(2, transform.getMatrices()[12], 1e-5f);
+    }
+
+    private static class NativeInts extends NativeSparseSetComponent {
+        private NativeInts() {
+            super(Integer.BYTES);
+        }
+
+        private void set(int entityId, int value) {
+            int index = addEntity(entityId);
+            getData().putInt(index * Integer.BYTES, value);
+        }
+
+        private int get(int entityId) {
+            return getData().getInt(indexOf(entityId) * Integer.BYTES);
+        }
+
+        @Override
+        public void deserializeState(@NotNull ComponentDataModel data) {
+        }
+        @Override
+        public @Nullable String serializeState(int entityId) {
+            return null;
+        }
+    }
+
+    @Test
+    public void storesNativeDataPackedAcrossReallocation() {
+        NativeInts ints = new NativeInts();
+        Assertions.assertNull(ints.getData());
+        // Grows past the initial capacity several times
+        for (int i = 0; i < 100; i++)
+            ints.set(i, i * 3);
+
+        ints.resetEntity(10);
+        ints.resetEntity(0);
+
+        Assertions.assertEquals(98, ints.size());
+        Assertions.assertEquals(98 * Integer.BYTES, ints.getData().capacity());
+        Assertions.assertEquals(ints.getAddress(), ints.addressAt(0));
+        for (int i = 0; i < ints.size(); i++) {
+            int entity = ints.entityAt(i);
+            Assertions.assertEquals(entity * 3, ints.getData().getInt(i * Integer.BYTES));
+            Assertions.assertEquals(entity * 3, ints.get(entity));
+        }
+
+        ints.free();
+        Assertions.assertEquals(0, ints.size());
+        Assertions.assertNull(ints.getData());
+
+        ints.set(5, 7);
+        Assertions.assertEquals(7, ints.get(5));
+        ints.free();
+    }
+}
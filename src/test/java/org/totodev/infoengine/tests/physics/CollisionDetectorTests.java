@@ -0,0 +1,45 @@
+package org.totodev.infoengine.tests.physics;
+
+import org.junit.jupiter.api.*;
+import org.totodev.engine.core.components.Transform2d;
+import org.totodev.engine.core.systems.Updater;
+import org.totodev.engine.ecs.*;
+import org.totodev.engine.physics.*;
+import org.totodev.infoengine.tests.CamelCaseGenerator;
+
+@DisplayNameGeneration(CamelCaseGenerator.class)
+public class CollisionDetectorTests {
+    @Test
+    public void classifiesContactsIntoEnterStayAndExit() {
+        Scene scene = new Scene();
+        Transform2d transform = new Transform2d();
+        BoxCollider2d collider = new BoxCollider2d();
+        scene.addComponent(transform);
+        scene.addComponent(collider);
+        CollisionDetector2d detector = new CollisionDetector2d();
+        scene.addSystem(detector);
+        scene.start();
+
+        int[] counts = new int[3];
+        scene.events.subscribe(CollisionDetector2d.EVENT_ENTER, (EventListener.OfObject) c -> counts[0] += ((Contacts2d) c).size());
+        scene.events.subscribe(CollisionDetector2d.EVENT_STAY, (EventListener.OfObject) c -> counts[1] += ((Contacts2d) c).size());
+        scene.events.subscribe(CollisionDetector2d.EVENT_EXIT, (EventListener.OfObject) c -> counts[2] += ((Contacts2d) c).size());
+
+        int a = scene.createEntity();
+        int b = scene.createEntity();
+        transform.setPosition(a, 0, 0);
+        transform.setPosition(b, 0.5f, 0);
+        collider.setSize(a, 1, 1);
+        collider.setSize(b, 1, 1);
+
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        Assertions.assertArrayEquals(new int[]{2, 2, 0}, counts);
+
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        Assertions.assertArrayEquals(new int[]{2, 4, 0}, counts);
+
+        transform.setPosition(b, 5, 0);
+        scene.events.invokeEvent(Updater.EVENT_POST_UPDATE, 0f);
+        Assertions.assertArrayEquals(new int[]{2, 4, 2}, counts);
+    }
+}